@@ -33,9 +33,13 @@ public class MusicEvents extends BroadcastReceiver {
     public static final String PLAYBACK_STATE = "playback-state";
     public static final String PLAYBACK_TRACK_CHANGED = "playback-track-changed";
     public static final String PLAYBACK_QUEUE_ENDED = "playback-queue-ended";
+    public static final String PLAYBACK_QUEUE_IMPORTED = "playback-queue-imported";
     public static final String PLAYBACK_ERROR = "playback-error";
     public static final String PLAYBACK_UNBIND = "playback-unbind";
 
+    // Browse Events
+    public static final String BROWSE_LOAD_CHILDREN = "browse-load-children";
+
     private final ReactContext reactContext;
 
     public MusicEvents(ReactContext reactContext) {
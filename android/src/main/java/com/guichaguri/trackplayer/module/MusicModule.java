@@ -4,6 +4,7 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.ServiceConnection;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.support.v4.content.LocalBroadcastManager;
@@ -12,13 +13,17 @@ import android.support.v4.media.session.PlaybackStateCompat;
 import android.util.Log;
 import com.facebook.react.bridge.*;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
 import com.guichaguri.trackplayer.service.MusicBinder;
 import com.guichaguri.trackplayer.service.MusicService;
 import com.guichaguri.trackplayer.service.Utils;
 import com.guichaguri.trackplayer.service.models.Track;
+import com.guichaguri.trackplayer.service.player.Crossfade;
+import com.guichaguri.trackplayer.service.player.ExoPlayback;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -33,6 +38,17 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
     private ArrayDeque<Runnable> initCallbacks = new ArrayDeque<>();
     private boolean connecting = false;
 
+    // How many converted tracks are kept
+    private static final int MAX_JS_OBJECTS = 256;
+
+    // The recently requested tracks already converted to JS objects, keyed by queue id
+    private final Map<Long, ReadableMap> jsObjects = new LinkedHashMap<Long, ReadableMap>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ReadableMap> eldest) {
+            return size() > MAX_JS_OBJECTS;
+        }
+    };
+
     public MusicModule(ReactApplicationContext reactContext) {
         super(reactContext);
     }
@@ -104,6 +120,23 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
         connecting = true;
     }
 
+    /**
+     * Converts a track to a JS object. The recent conversions are cached, so repeated requests only copy the native map.
+     * @return A new map, which can be sent to JS
+     */
+    private WritableMap toWritableMap(Track track) {
+        ReadableMap object = jsObjects.get(track.queueId);
+
+        if(object == null) {
+            object = track.toWritableMap();
+            jsObjects.put(track.queueId, object);
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.merge(object);
+        return map;
+    }
+
     /* ****************************** API ****************************** */
 
     @Nullable
@@ -132,6 +165,11 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
         constants.put("STATE_STOPPED", PlaybackStateCompat.STATE_STOPPED);
         constants.put("STATE_BUFFERING", PlaybackStateCompat.STATE_BUFFERING);
 
+        // Repeat Modes
+        constants.put("REPEAT_OFF", Player.REPEAT_MODE_OFF);
+        constants.put("REPEAT_TRACK", Player.REPEAT_MODE_ONE);
+        constants.put("REPEAT_QUEUE", Player.REPEAT_MODE_ALL);
+
         // Rating Types
         constants.put("RATING_HEART", RatingCompat.RATING_HEART);
         constants.put("RATING_THUMBS_UP_DOWN", RatingCompat.RATING_THUMB_UP_DOWN);
@@ -235,6 +273,28 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
         });
     }
 
+    @ReactMethod
+    public void updateMetadataForTrack(final int playerId, final String id, ReadableMap map, final Promise callback) {
+        final Bundle data = Arguments.toBundle(map);
+
+        waitForConnection(() -> {
+            List<Track> queue = binder.getPlayback().get(playerId).getQueue();
+
+            for(Track track : queue) {
+                if(track.id.equals(id)) {
+                    track.update(getReactApplicationContext(), data, binder.getRatingType());
+                    jsObjects.remove(track.queueId);
+                    binder.updateMetadata(playerId, track, data);
+
+                    callback.resolve(null);
+                    return;
+                }
+            }
+
+            callback.reject("track_not_in_queue", "Given track ID was not found in queue");
+        });
+    }
+
     @ReactMethod
     public void removeUpcomingTracks(final int playerId, final Promise callback) {
         waitForConnection(() -> {
@@ -243,11 +303,207 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
         });
     }
 
+    @ReactMethod
+    public void registerBrowseProvider(final boolean enabled, final Promise callback) {
+        waitForConnection(() -> {
+            binder.setBrowseProvider(enabled);
+            callback.resolve(null);
+        });
+    }
+
+    @ReactMethod
+    public void setBrowseChildren(final int requestId, ReadableArray items, final Promise callback) {
+        final ArrayList itemList = items != null ? Arguments.toList(items) : null;
+
+        waitForConnection(() -> {
+            if(binder.setBrowseChildren(requestId, itemList)) {
+                callback.resolve(null);
+            } else {
+                callback.reject("browse_request_expired", "The browse request has already timed out or been answered");
+            }
+        });
+    }
+
+    @ReactMethod
+    public void invalidateBrowseChildren(final String parentId, final Promise callback) {
+        waitForConnection(() -> {
+            binder.getBrowseTree().invalidate(parentId);
+            callback.resolve(null);
+        });
+    }
+
+    @ReactMethod
+    public void loadSound(ReadableMap data, final Promise callback) {
+        final Bundle bundle = Arguments.toBundle(data);
+
+        waitForConnection(() -> {
+            String id = bundle.getString("id");
+
+            if(id == null) {
+                callback.reject("invalid_sound_object", "Sound is missing an id");
+                return;
+            }
+
+            Uri uri = Utils.getUri(getReactApplicationContext(), bundle, "url");
+            binder.getSoundEffects().load(id, uri, callback);
+        });
+    }
+
+    @ReactMethod
+    public void playSound(final String id, ReadableMap data, final Promise callback) {
+        final Bundle options = data != null ? Arguments.toBundle(data) : new Bundle();
+
+        waitForConnection(() -> {
+            float volume = (float)options.getDouble("volume", 1);
+            float rate = (float)options.getDouble("rate", 1);
+            boolean loop = options.getBoolean("loop", false);
+
+            binder.getSoundEffects().play(id, volume, rate, loop, callback);
+        });
+    }
+
+    @ReactMethod
+    public void stopSound(final int streamId, final Promise callback) {
+        waitForConnection(() -> {
+            binder.getSoundEffects().stop(streamId);
+            callback.resolve(null);
+        });
+    }
+
+    @ReactMethod
+    public void unloadSound(final String id, final Promise callback) {
+        waitForConnection(() -> {
+            binder.getSoundEffects().unload(id);
+            callback.resolve(null);
+        });
+    }
+
     @ReactMethod
     public void skip(final int playerId, final String track, final Promise callback) {
         waitForConnection(() -> binder.getPlayback().get(playerId).skip(track, callback));
     }
 
+    @ReactMethod
+    public void addFromPlaylist(final int playerId, ReadableMap data, final Promise callback) {
+        final Bundle bundle = Arguments.toBundle(data);
+
+        waitForConnection(() -> {
+            Uri uri = Utils.getUri(getReactApplicationContext(), bundle, "url");
+
+            if(uri == null) {
+                callback.reject("invalid_playlist", "The playlist is missing an url");
+                return;
+            }
+
+            binder.addFromPlaylist(playerId, uri, callback);
+        });
+    }
+
+    @ReactMethod
+    public void addFromMediaStore(final int playerId, ReadableMap data, final Promise callback) {
+        final Bundle options = data != null ? Arguments.toBundle(data) : new Bundle();
+
+        waitForConnection(() -> binder.addFromMediaStore(playerId, options, callback));
+    }
+
+    @ReactMethod
+    public void switchQueue(final int playerId, final String name, final Promise callback) {
+        waitForConnection(() -> {
+            binder.getPlayback().get(playerId).switchQueue(name);
+            callback.resolve(null);
+        });
+    }
+
+    @ReactMethod
+    public void removeQueue(final int playerId, final String name, final Promise callback) {
+        waitForConnection(() -> {
+            if(binder.getPlayback().get(playerId).removeQueue(name)) {
+                callback.resolve(null);
+            } else {
+                callback.reject("queue_not_found", "Given queue was not found or is the active one");
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getQueues(final int playerId, final Promise callback) {
+        waitForConnection(() -> {
+            WritableArray names = Arguments.createArray();
+
+            for(String name : binder.getPlayback().get(playerId).getQueueNames()) {
+                names.pushString(name);
+            }
+
+            callback.resolve(names);
+        });
+    }
+
+    @ReactMethod
+    public void searchQueue(final int playerId, final String query, final int offset, final int limit, final Promise callback) {
+        waitForConnection(() -> {
+            ExoPlayback playback = binder.getPlayback().get(playerId);
+            List<Integer> positions = new ArrayList<>();
+            int total = playback.search(query, offset, limit, positions);
+
+            List<Track> queue = playback.getQueue();
+            WritableArray results = Arguments.createArray();
+
+            for(int position : positions) {
+                WritableMap result = Arguments.createMap();
+                result.putString("id", queue.get(position).id);
+                result.putInt("position", position);
+                results.pushMap(result);
+            }
+
+            WritableMap map = Arguments.createMap();
+            map.putInt("total", total);
+            map.putArray("results", results);
+            callback.resolve(map);
+        });
+    }
+
+    @ReactMethod
+    public void getActiveQueue(final int playerId, final Promise callback) {
+        waitForConnection(() -> callback.resolve(binder.getPlayback().get(playerId).getQueueName()));
+    }
+
+    @ReactMethod
+    public void setRepeatMode(final int playerId, final int mode, final Promise callback) {
+        waitForConnection(() -> {
+            binder.getPlayback().get(playerId).setRepeatMode(mode);
+            callback.resolve(null);
+        });
+    }
+
+    @ReactMethod
+    public void getRepeatMode(final int playerId, final Promise callback) {
+        waitForConnection(() -> callback.resolve(binder.getPlayback().get(playerId).getRepeatMode()));
+    }
+
+    @ReactMethod
+    public void setShuffleMode(final int playerId, final boolean enabled, final double seed, final Promise callback) {
+        waitForConnection(() -> {
+            binder.getPlayback().get(playerId).setShuffleMode(enabled, (long)seed);
+            callback.resolve(null);
+        });
+    }
+
+    @ReactMethod
+    public void getShuffleMode(final int playerId, final Promise callback) {
+        waitForConnection(() -> callback.resolve(binder.getPlayback().get(playerId).getShuffleMode()));
+    }
+
+    @ReactMethod
+    public void setStandbyHint(final int playerId, final String trackId, final Promise callback) {
+        waitForConnection(() -> {
+            if(binder.getPlayback().get(playerId).setStandbyHint(trackId)) {
+                callback.resolve(null);
+            } else {
+                callback.reject("track_not_in_queue", "Given track ID was not found in queue");
+            }
+        });
+    }
+
     @ReactMethod
     public void skipToNext(final int playerId, final Promise callback) {
         waitForConnection(() -> binder.getPlayback().get(playerId).skipToNext(callback));
@@ -307,6 +563,19 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
         });
     }
 
+    @ReactMethod
+    public void setCrossfade(final int playerId, final double duration, final String curve, final Promise callback) {
+        waitForConnection(() -> {
+            Crossfade crossfade = duration > 0 ? new Crossfade(Utils.toMillis(duration), curve) : null;
+
+            if(binder.getPlayback().get(playerId).setCrossfade(crossfade)) {
+                callback.resolve(null);
+            } else {
+                callback.reject("crossfade_unavailable", "Crossfades need the warmStandby or crossfadeDuration setup options");
+            }
+        });
+    }
+
     @ReactMethod
     public void getVolume(final int playerId, final Promise callback) {
         waitForConnection(() -> callback.resolve(binder.getPlayback().get(playerId).getVolume()));
@@ -332,7 +601,7 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
 
             for(Track track : tracks) {
                 if(track.id.equals(id)) {
-                    callback.resolve(Arguments.fromBundle(track.originalItem));
+                    callback.resolve(toWritableMap(track));
                     return;
                 }
             }
@@ -344,14 +613,14 @@ public class MusicModule extends ReactContextBaseJavaModule implements ServiceCo
     @ReactMethod
     public void getQueue(final int playerId, Promise callback) {
         waitForConnection(() -> {
-            List queue = new ArrayList();
+            WritableArray queue = Arguments.createArray();
             List<Track> tracks = binder.getPlayback().get(playerId).getQueue();
 
             for(Track track : tracks) {
-                queue.add(track.originalItem);
+                queue.pushMap(toWritableMap(track));
             }
 
-            callback.resolve(Arguments.fromList(queue));
+            callback.resolve(queue);
         });
     }
 
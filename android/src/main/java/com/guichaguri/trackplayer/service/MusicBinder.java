@@ -1,10 +1,18 @@
 package com.guichaguri.trackplayer.service;
 
+import android.net.Uri;
 import android.os.Binder;
 import android.os.Bundle;
 import android.os.Handler;
+import android.support.v4.media.session.MediaSessionCompat;
 import com.facebook.react.bridge.Promise;
+import com.guichaguri.trackplayer.service.browse.BrowseTree;
+import com.guichaguri.trackplayer.service.browse.JsBrowseProvider;
+import com.guichaguri.trackplayer.service.importer.MediaStoreImporter;
+import com.guichaguri.trackplayer.service.importer.PlaylistImporter;
+import com.guichaguri.trackplayer.service.models.Track;
 import com.guichaguri.trackplayer.service.player.ExoPlayback;
+import com.guichaguri.trackplayer.service.player.SoundEffects;
 
 import java.util.List;
 
@@ -40,6 +48,8 @@ public class MusicBinder extends Binder {
     }
 
     public void setupPlayer(Bundle bundle, Promise promise) {
+        // The old players might still be loading through the cache, which is released while creating the new ones
+        manager.switchPlayback(null);
         manager.switchPlayback(manager.createLocalPlayback(bundle));
         promise.resolve(null);
     }
@@ -49,6 +59,39 @@ public class MusicBinder extends Binder {
         manager.getMetadata().updateOptions(bundle);
     }
 
+    public void updateMetadata(int playerId, Track track, Bundle changes) {
+        manager.onTrackMetadataUpdate(playerId, track, changes);
+    }
+
+    public void addFromPlaylist(int playerId, Uri uri, Promise promise) {
+        manager.importTracks(playerId, new PlaylistImporter(service, manager.getDataSources(), uri), promise);
+    }
+
+    public void addFromMediaStore(int playerId, Bundle options, Promise promise) {
+        manager.importTracks(playerId, new MediaStoreImporter(service, options), promise);
+    }
+
+    public SoundEffects getSoundEffects() {
+        return manager.getSoundEffects();
+    }
+
+    public MediaSessionCompat.Token getSessionToken() {
+        return manager.getMetadata().getSession().getSessionToken();
+    }
+
+    public BrowseTree getBrowseTree() {
+        return manager.getBrowseTree();
+    }
+
+    public void setBrowseProvider(boolean enabled) {
+        manager.setJsBrowseProvider(enabled);
+    }
+
+    public boolean setBrowseChildren(int requestId, List items) {
+        JsBrowseProvider provider = manager.getJsBrowseProvider();
+        return provider != null && provider.onChildrenLoaded(requestId, items);
+    }
+
     public int getRatingType() {
         return manager.getMetadata().getRatingType();
     }
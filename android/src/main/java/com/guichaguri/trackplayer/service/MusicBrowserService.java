@@ -0,0 +1,102 @@
+package com.guichaguri.trackplayer.service;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.support.annotation.NonNull;
+import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.support.v4.media.MediaBrowserServiceCompat;
+import com.guichaguri.trackplayer.service.browse.BrowseTree;
+import java.util.ArrayDeque;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Exposes the browse tree to Android Auto, Wear and other media browsers.
+ *
+ * The playback and the media session live in {@link MusicService}, this service binds to it
+ * to get the session token and to load the children through the {@link BrowseTree}.
+ *
+ * @author Guichaguri
+ */
+public class MusicBrowserService extends MediaBrowserServiceCompat implements ServiceConnection, BrowseTree.Listener {
+
+    private MusicBinder binder;
+    private ArrayDeque<Runnable> initCallbacks = new ArrayDeque<>();
+    private boolean bound = false;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Starts the playback service, which also starts the JS task
+        Intent intent = new Intent(this, MusicService.class);
+        startService(intent);
+        intent.setAction(Utils.CONNECT_INTENT);
+        bound = bindService(intent, this, 0);
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder service) {
+        binder = (MusicBinder)service;
+
+        setSessionToken(binder.getSessionToken());
+        binder.getBrowseTree().setListener(this);
+
+        while(!initCallbacks.isEmpty()) {
+            initCallbacks.remove().run();
+        }
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        binder = null;
+    }
+
+    @Nullable
+    @Override
+    public BrowserRoot onGetRoot(@NonNull String clientPackageName, int clientUid, @Nullable Bundle rootHints) {
+        return new BrowserRoot(BrowseTree.ROOT_ID, null);
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId, @NonNull Result<List<MediaItem>> result) {
+        onLoadChildren(parentId, result, Bundle.EMPTY);
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId, @NonNull Result<List<MediaItem>> result, @NonNull Bundle options) {
+        int page = options.getInt(MediaBrowserCompat.EXTRA_PAGE, 0);
+        int pageSize = options.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, BrowseTree.DEFAULT_PAGE_SIZE);
+
+        result.detach();
+
+        Runnable r = () -> binder.getBrowseTree().loadChildren(parentId, page, pageSize, result::sendResult);
+
+        if(binder != null) {
+            r.run();
+        } else {
+            initCallbacks.add(r);
+        }
+    }
+
+    @Override
+    public void onChildrenChanged(String parentId) {
+        notifyChildrenChanged(parentId);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        if(binder != null) binder.getBrowseTree().setListener(null);
+        if(bound) unbindService(this);
+
+        binder = null;
+        bound = false;
+    }
+
+}
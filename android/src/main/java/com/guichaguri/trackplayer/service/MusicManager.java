@@ -17,6 +17,7 @@ import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.support.annotation.RequiresApi;
 import android.util.Log;
+import com.facebook.react.bridge.Promise;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.DefaultRenderersFactory;
@@ -25,12 +26,21 @@ import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.guichaguri.trackplayer.module.MusicEvents;
+import com.guichaguri.trackplayer.service.browse.BrowseTree;
+import com.guichaguri.trackplayer.service.browse.JsBrowseProvider;
+import com.guichaguri.trackplayer.service.importer.TrackImporter;
 import com.guichaguri.trackplayer.service.metadata.MetadataManager;
 import com.guichaguri.trackplayer.service.models.Track;
+import com.guichaguri.trackplayer.service.player.Crossfade;
+import com.guichaguri.trackplayer.service.player.DataSourcePool;
 import com.guichaguri.trackplayer.service.player.ExoPlayback;
+import com.guichaguri.trackplayer.service.player.SoundEffects;
+import com.guichaguri.trackplayer.service.player.http.HttpStack;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.google.android.exoplayer2.DefaultLoadControl.*;
 
@@ -46,6 +56,12 @@ public class MusicManager implements OnAudioFocusChangeListener {
 
     private MetadataManager metadata;
     private List<ExoPlayback> playbacks;
+    private final DataSourcePool dataSources;
+    private SoundEffects sounds;
+    private ExecutorService importer;
+
+    private final BrowseTree browseTree = new BrowseTree();
+    private JsBrowseProvider jsBrowseProvider;
 
     @RequiresApi(26)
     private AudioFocusRequest focus = null;
@@ -66,6 +82,7 @@ public class MusicManager implements OnAudioFocusChangeListener {
     public MusicManager(MusicService service) {
         this.service = service;
         this.metadata = new MetadataManager(service, this);
+        this.dataSources = new DataSourcePool(service);
 
         PowerManager powerManager = (PowerManager)service.getSystemService(Context.POWER_SERVICE);
         wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "track-player-wake-lock");
@@ -93,6 +110,79 @@ public class MusicManager implements OnAudioFocusChangeListener {
         return metadata;
     }
 
+    /**
+     * Gets the sound effect player, creating it on the first use
+     */
+    public SoundEffects getSoundEffects() {
+        if(sounds == null) {
+            sounds = new SoundEffects(service, dataSources, Build.VERSION.SDK_INT >= 21 ? getAudioAttributes() : null);
+        }
+        return sounds;
+    }
+
+    public DataSourcePool getDataSources() {
+        return dataSources;
+    }
+
+    /**
+     * Imports tracks in a background thread, appending each chunk to the active queue as soon as it's ready.
+     * The imports are run one at a time, in the order they were requested.
+     */
+    public void importTracks(int playerId, TrackImporter trackImporter, Promise promise) {
+        if(playbacks == null || playerId >= playbacks.size()) {
+            promise.reject("import_failed", "The player is not set up");
+            return;
+        }
+
+        if(importer == null) importer = Executors.newSingleThreadExecutor();
+
+        // The tracks go to the queue that was active when the import started, even if another one is switched to
+        String queueName = playbacks.get(playerId).getQueueName();
+
+        trackImporter.setListener(new TrackImporter.Listener() {
+            @Override
+            public void onTracksImported(List<Track> tracks) {
+                if(playbacks == null || playerId >= playbacks.size()) return;
+
+                // The queue might have been removed in the meantime
+                playbacks.get(playerId).addToQueue(queueName, tracks);
+            }
+
+            @Override
+            public void onImportFinished(int count) {
+                Bundle bundle = new Bundle();
+                bundle.putInt("playerId", playerId);
+                bundle.putInt("count", count);
+                service.emit(MusicEvents.PLAYBACK_QUEUE_IMPORTED, bundle);
+
+                promise.resolve(count);
+            }
+
+            @Override
+            public void onImportFailed(Exception ex) {
+                Log.w(Utils.LOG, "Failed to import the tracks", ex);
+                promise.reject("import_failed", ex);
+            }
+        }, metadata.getRatingType());
+
+        importer.execute(trackImporter);
+    }
+
+    public BrowseTree getBrowseTree() {
+        return browseTree;
+    }
+
+    public JsBrowseProvider getJsBrowseProvider() {
+        return jsBrowseProvider;
+    }
+
+    public void setJsBrowseProvider(boolean enabled) {
+        if(jsBrowseProvider != null) jsBrowseProvider.destroy();
+
+        jsBrowseProvider = enabled ? new JsBrowseProvider(service) : null;
+        browseTree.setProvider(jsBrowseProvider);
+    }
+
     public void switchPlayback(List<ExoPlayback> playbacks) {
         if(this.playbacks != null) {
             for (ExoPlayback playback : this.playbacks) {
@@ -111,26 +201,47 @@ public class MusicManager implements OnAudioFocusChangeListener {
         int maxBuffer = (int)Utils.toMillis(options.getDouble("maxBuffer", Utils.toSeconds(DEFAULT_MAX_BUFFER_MS)));
         int playBuffer = (int)Utils.toMillis(options.getDouble("playBuffer", Utils.toSeconds(DEFAULT_BUFFER_FOR_PLAYBACK_MS)));
         long cacheMaxSize = (long)(options.getDouble("maxCacheSize", 0) * 1024);
-        int multiplier = DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS / DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+        long crossfadeDuration = Utils.toMillis(options.getDouble("crossfadeDuration", 0));
+        String crossfadeCurve = options.getString("crossfadeCurve");
 
-        LoadControl control = new DefaultLoadControl.Builder()
-                .setBufferDurationsMs(minBuffer, maxBuffer, playBuffer, playBuffer * multiplier)
-                .createDefaultLoadControl();
+        // Crossfades play the incoming track through the standby player
+        boolean warmStandby = options.getBoolean("warmStandby", false) || crossfadeDuration > 0;
+
+        dataSources.setCacheMaxSize(cacheMaxSize);
+        dataSources.setHttpStack(HttpStack.create(options));
+        dataSources.setSeekIndexing(options.getBoolean("seekIndexing", false));
 
         List<ExoPlayback> exoPlaybacks = new ArrayList<>();
 
         for (int i = 0; i < playerCount; i++) {
-            SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(service, new DefaultRenderersFactory(service), new DefaultTrackSelector(), control);
+            SimpleExoPlayer player = createPlayer(minBuffer, maxBuffer, playBuffer);
+            SimpleExoPlayer standby = warmStandby ? createPlayer(minBuffer, maxBuffer, playBuffer) : null;
 
-            player.setAudioAttributes(new com.google.android.exoplayer2.audio.AudioAttributes.Builder()
-                    .setContentType(C.CONTENT_TYPE_MUSIC).setUsage(C.USAGE_MEDIA).build());
+            ExoPlayback playback = new ExoPlayback(service, this, player, standby, dataSources, i);
+            if(crossfadeDuration > 0) playback.setCrossfade(new Crossfade(crossfadeDuration, crossfadeCurve));
 
-            exoPlaybacks.add(new ExoPlayback(service, this, player, cacheMaxSize, i));
+            exoPlaybacks.add(playback);
         }
 
         return exoPlaybacks;
     }
 
+    private SimpleExoPlayer createPlayer(int minBuffer, int maxBuffer, int playBuffer) {
+        int multiplier = DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS / DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+
+        // Each player needs its own load control, as it keeps track of the player allocations
+        LoadControl control = new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(minBuffer, maxBuffer, playBuffer, playBuffer * multiplier)
+                .createDefaultLoadControl();
+
+        SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(service, new DefaultRenderersFactory(service), new DefaultTrackSelector(), control);
+
+        player.setAudioAttributes(new com.google.android.exoplayer2.audio.AudioAttributes.Builder()
+                .setContentType(C.CONTENT_TYPE_MUSIC).setUsage(C.USAGE_MEDIA).build());
+
+        return player;
+    }
+
     public void onPlay(int playerId) {
         Log.d(Utils.LOG, "onPlay");
         if(playbacks == null) return;
@@ -143,7 +254,7 @@ public class MusicManager implements OnAudioFocusChangeListener {
 
             if(!wakeLock.isHeld()) wakeLock.acquire();
 
-            if(!Utils.isLocal(track.uri)) {
+            if(!Utils.isLocal(track.getUri())) {
                 if(!wifiLock.isHeld()) wifiLock.acquire();
             }
         }
@@ -193,10 +304,18 @@ public class MusicManager implements OnAudioFocusChangeListener {
         metadata.updatePlayback(playbacks);
     }
 
+    public void onPlaybackUpdate(int playerId) {
+        if(playbacks == null) return;
+
+        // Seeks, speed changes and track transitions, only published to controllers when needed
+        metadata.updatePlayback(playbacks);
+    }
+
     public void onTrackUpdate(int playerId, Track previous, long prevPos, Track next) {
         Log.d(Utils.LOG, "onTrackUpdate");
 
         if(next != null) metadata.updateMetadata(next);
+        if(playbacks != null) metadata.updateQueue(playbacks);
 
         Bundle bundle = new Bundle();
         bundle.putInt("playerId", playerId);
@@ -206,8 +325,35 @@ public class MusicManager implements OnAudioFocusChangeListener {
         service.emit(MusicEvents.PLAYBACK_TRACK_CHANGED, bundle);
     }
 
+    public void onTrackMetadataUpdate(int playerId, Track track, Bundle changes) {
+        Log.d(Utils.LOG, "onTrackMetadataUpdate");
+
+        if(playbacks == null) return;
+
+        // The queue item of the track has been rebuilt
+        metadata.invalidateQueueItem(playbacks, track);
+        playbacks.get(playerId).onTrackUpdated(track);
+
+        if(playbacks.get(playerId).getCurrentTrack() != track) return;
+
+        metadata.updateMetadata(track, changes);
+    }
+
+    public void onQueueUpdate(int playerId) {
+        if(playbacks == null) return;
+
+        metadata.updateQueue(playbacks);
+    }
+
+    public void onModeUpdate(int playerId) {
+        if(playbacks == null) return;
+
+        metadata.updateModes(playbacks);
+    }
+
     public void onReset(int playerId) {
         metadata.removeNotifications();
+        onQueueUpdate(playerId);
     }
 
     public void onEnd(int playerId, Track previous, long prevPos) {
@@ -250,6 +396,14 @@ public class MusicManager implements OnAudioFocusChangeListener {
                 break;
         }
 
+        if(sounds != null) {
+            // The sound effects follow the focus by themselves, as they aren't controlled by the duck event
+            if(paused) sounds.pause();
+            else sounds.resume();
+
+            sounds.setDucking(ducking);
+        }
+
         Bundle bundle = new Bundle();
         bundle.putBoolean("paused", paused);
         bundle.putBoolean("ducking", ducking);
@@ -268,10 +422,7 @@ public class MusicManager implements OnAudioFocusChangeListener {
         } else if(Build.VERSION.SDK_INT >= 26) {
             focus = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN)
                     .setOnAudioFocusChangeListener(this)
-                    .setAudioAttributes(new AudioAttributes.Builder()
-                            .setUsage(AudioAttributes.USAGE_MEDIA)
-                            .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
-                            .build())
+                    .setAudioAttributes(getAudioAttributes())
                     .build();
 
             r = manager.requestAudioFocus(focus);
@@ -287,6 +438,17 @@ public class MusicManager implements OnAudioFocusChangeListener {
         }
     }
 
+    /**
+     * The attributes shared by the audio focus request and the sound effects
+     */
+    @RequiresApi(21)
+    private AudioAttributes getAudioAttributes() {
+        return new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_MEDIA)
+                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                .build();
+    }
+
     private void abandonFocus() {
         if(!hasAudioFocus) return;
         Log.d(Utils.LOG, "Abandoning audio focus...");
@@ -326,6 +488,21 @@ public class MusicManager implements OnAudioFocusChangeListener {
         // Release the metadata resources
         metadata.destroy();
 
+        // Release the sound effects
+        if(sounds != null) sounds.destroy();
+        sounds = null;
+
+        // Cancel the imports
+        if(importer != null) importer.shutdownNow();
+        importer = null;
+
+        // Release the cache
+        dataSources.destroy();
+
+        // Release the browse tree
+        if(jsBrowseProvider != null) jsBrowseProvider.destroy();
+        browseTree.destroy();
+
         // Release the locks
         if(wifiLock.isHeld()) wifiLock.release();
         if(wakeLock.isHeld()) wakeLock.release();
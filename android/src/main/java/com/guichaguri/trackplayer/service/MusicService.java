@@ -55,7 +55,8 @@ public class MusicService extends HeadlessJsTaskService {
             return START_NOT_STICKY;
         }
 
-        manager = new MusicManager(this);
+        // The browser service and the module share the same manager
+        if(manager == null) manager = new MusicManager(this);
         super.onStartCommand(intent, flags, startId);
         return START_STICKY;
     }
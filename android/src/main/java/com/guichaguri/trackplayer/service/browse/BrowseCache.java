@@ -0,0 +1,102 @@
+package com.guichaguri.trackplayer.service.browse;
+
+import android.os.SystemClock;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of browse pages which expire after a while
+ *
+ * @author Guichaguri
+ */
+public class BrowseCache {
+
+    private final LinkedHashMap<String, Entry> entries;
+    private int maxPages;
+    private long ttl;
+
+    public BrowseCache(int maxPages, long ttl) {
+        this.maxPages = maxPages;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > BrowseCache.this.maxPages;
+            }
+        };
+    }
+
+    public synchronized void setMaxPages(int maxPages) {
+        this.maxPages = maxPages;
+
+        // Trims the least recently used pages
+        Iterator<String> it = entries.keySet().iterator();
+        while(entries.size() > maxPages && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public synchronized void setTTL(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Gets a page, if it's cached and has not expired yet
+     */
+    public synchronized List<MediaItem> get(String parentId, int page, int pageSize) {
+        String key = getKey(parentId, page, pageSize);
+        Entry entry = entries.get(key);
+
+        if(entry == null) return null;
+
+        if(SystemClock.elapsedRealtime() >= entry.expiration) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.items;
+    }
+
+    public synchronized void put(String parentId, int page, int pageSize, List<MediaItem> items) {
+        if(maxPages <= 0 || ttl <= 0) return;
+
+        entries.put(getKey(parentId, page, pageSize), new Entry(items, SystemClock.elapsedRealtime() + ttl));
+    }
+
+    /**
+     * Removes all cached pages of a parent
+     */
+    public synchronized void remove(String parentId) {
+        String prefix = parentId + '\n';
+        Iterator<String> it = entries.keySet().iterator();
+
+        while(it.hasNext()) {
+            if(it.next().startsWith(prefix)) it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    static String getKey(String parentId, int page, int pageSize) {
+        return parentId + '\n' + page + '\n' + pageSize;
+    }
+
+    private static class Entry {
+
+        private final List<MediaItem> items;
+        private final long expiration;
+
+        private Entry(List<MediaItem> items, long expiration) {
+            this.items = items;
+            this.expiration = expiration;
+        }
+
+    }
+
+}
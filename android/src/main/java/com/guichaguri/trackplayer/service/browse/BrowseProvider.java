@@ -0,0 +1,35 @@
+package com.guichaguri.trackplayer.service.browse;
+
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import java.util.List;
+
+/**
+ * Supplies the children of the browse tree, one page at a time.
+ *
+ * Implementations can be registered natively through {@link BrowseTree#setDefaultProvider(BrowseProvider)}
+ * or from JS through {@code registerBrowseProvider}, which takes precedence while registered.
+ *
+ * @author Guichaguri
+ */
+public interface BrowseProvider {
+
+    interface Callback {
+
+        /**
+         * Sends the loaded page
+         * @param items The items or {@code null} if they couldn't be loaded
+         */
+        void onResult(List<MediaItem> items);
+
+    }
+
+    /**
+     * Loads a page of children. Called in the main thread, the callback can be called from any thread.
+     * @param parentId The id of the parent item
+     * @param page The page index, starting at 0
+     * @param pageSize The maximum amount of items in the page
+     * @param callback The callback
+     */
+    void loadChildren(String parentId, int page, int pageSize, Callback callback);
+
+}
@@ -0,0 +1,140 @@
+package com.guichaguri.trackplayer.service.browse;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the children of the browse tree lazily, page by page, keeping the loaded pages in a cache.
+ * Concurrent requests for the same page are merged into a single provider call.
+ *
+ * @author Guichaguri
+ */
+public class BrowseTree {
+
+    public interface Listener {
+        void onChildrenChanged(String parentId);
+    }
+
+    public static final String ROOT_ID = "/";
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_CACHE_PAGES = 100;
+    private static final long DEFAULT_CACHE_TTL = 5 * 60 * 1000;
+
+    private static BrowseProvider defaultProvider;
+
+    /**
+     * Sets a native provider, used when there's no provider registered from JS
+     * @param provider The provider or {@code null} to remove it
+     */
+    public static void setDefaultProvider(BrowseProvider provider) {
+        defaultProvider = provider;
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final BrowseCache cache = new BrowseCache(DEFAULT_CACHE_PAGES, DEFAULT_CACHE_TTL);
+    private final Map<String, List<BrowseProvider.Callback>> pending = new HashMap<>();
+
+    private BrowseProvider provider;
+    private Listener listener;
+
+    // Incremented when the tree is invalidated, so results from before that are not cached
+    private int generation = 0;
+
+    public void setProvider(BrowseProvider provider) {
+        this.provider = provider;
+        invalidate(null);
+    }
+
+    public BrowseProvider getProvider() {
+        return provider != null ? provider : defaultProvider;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Updates the cache limits
+     * @param maxPages The maximum amount of pages kept in memory
+     * @param ttl How long a page is kept, in milliseconds
+     */
+    public void setCacheLimits(int maxPages, long ttl) {
+        cache.setMaxPages(maxPages);
+        cache.setTTL(ttl);
+    }
+
+    /**
+     * Loads a page of children. Has to be called in the main thread, the callback is also called in the main thread.
+     */
+    public void loadChildren(String parentId, int page, int pageSize, BrowseProvider.Callback callback) {
+        List<MediaItem> cached = cache.get(parentId, page, pageSize);
+
+        if(cached != null) {
+            callback.onResult(cached);
+            return;
+        }
+
+        BrowseProvider provider = getProvider();
+
+        if(provider == null) {
+            callback.onResult(null);
+            return;
+        }
+
+        String key = BrowseCache.getKey(parentId, page, pageSize);
+        List<BrowseProvider.Callback> callbacks = pending.get(key);
+
+        if(callbacks != null) {
+            // The page is already being loaded
+            callbacks.add(callback);
+            return;
+        }
+
+        callbacks = new ArrayList<>(1);
+        callbacks.add(callback);
+        pending.put(key, callbacks);
+
+        int gen = generation;
+
+        provider.loadChildren(parentId, page, pageSize, (items) -> handler.post(() -> {
+            if(items != null && gen == generation) cache.put(parentId, page, pageSize, items);
+
+            List<BrowseProvider.Callback> list = pending.remove(key);
+            if(list == null) return;
+
+            for(BrowseProvider.Callback c : list) {
+                c.onResult(items);
+            }
+        }));
+    }
+
+    /**
+     * Drops the cached children and notifies the connected browsers
+     * @param parentId The parent id or {@code null} to invalidate the whole tree
+     */
+    public void invalidate(String parentId) {
+        generation++;
+
+        if(parentId == null) {
+            cache.clear();
+            if(listener != null) listener.onChildrenChanged(ROOT_ID);
+        } else {
+            cache.remove(parentId);
+            if(listener != null) listener.onChildrenChanged(parentId);
+        }
+    }
+
+    public void destroy() {
+        handler.removeCallbacksAndMessages(null);
+        pending.clear();
+        cache.clear();
+        listener = null;
+    }
+
+}
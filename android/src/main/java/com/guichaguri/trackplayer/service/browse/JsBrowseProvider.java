@@ -0,0 +1,107 @@
+package com.guichaguri.trackplayer.service.browse;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.support.v4.media.MediaDescriptionCompat;
+import android.util.SparseArray;
+import com.guichaguri.trackplayer.module.MusicEvents;
+import com.guichaguri.trackplayer.service.MusicService;
+import com.guichaguri.trackplayer.service.Utils;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests the children from JS through an event, which is answered by {@code setBrowseChildren}
+ *
+ * @author Guichaguri
+ */
+public class JsBrowseProvider implements BrowseProvider {
+
+    /**
+     * How long JS has to answer a request
+     */
+    private static final long TIMEOUT = 10000;
+
+    private final MusicService service;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final SparseArray<Callback> requests = new SparseArray<>();
+    private int lastRequestId = 0;
+
+    public JsBrowseProvider(MusicService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void loadChildren(String parentId, int page, int pageSize, Callback callback) {
+        int requestId = ++lastRequestId;
+        requests.put(requestId, callback);
+
+        Bundle bundle = new Bundle();
+        bundle.putInt("requestId", requestId);
+        bundle.putString("parentId", parentId);
+        bundle.putInt("page", page);
+        bundle.putInt("pageSize", pageSize);
+        service.emit(MusicEvents.BROWSE_LOAD_CHILDREN, bundle);
+
+        handler.postDelayed(() -> onChildrenLoaded(requestId, null), TIMEOUT);
+    }
+
+    /**
+     * Answers a request
+     * @param requestId The request id
+     * @param items The list of item bundles or {@code null} if they couldn't be loaded
+     * @return Whether the request was still waiting for an answer
+     */
+    public boolean onChildrenLoaded(int requestId, List items) {
+        Callback callback = requests.get(requestId);
+        if(callback == null) return false;
+
+        requests.remove(requestId);
+        callback.onResult(items != null ? createItems(service, items) : null);
+        return true;
+    }
+
+    public void destroy() {
+        handler.removeCallbacksAndMessages(null);
+
+        for(int i = 0; i < requests.size(); i++) {
+            requests.valueAt(i).onResult(null);
+        }
+        requests.clear();
+    }
+
+    private static List<MediaItem> createItems(Context context, List objects) {
+        List<MediaItem> items = new ArrayList<>(objects.size());
+
+        for(Object o : objects) {
+            if(o instanceof Bundle) items.add(createItem(context, (Bundle)o));
+        }
+
+        return items;
+    }
+
+    private static MediaItem createItem(Context context, Bundle bundle) {
+        boolean browsable = bundle.getBoolean("browsable", false);
+        boolean playable = bundle.getBoolean("playable", !browsable);
+        Uri artwork = Utils.getUri(context, bundle, "artwork");
+
+        MediaDescriptionCompat descr = new MediaDescriptionCompat.Builder()
+                .setMediaId(bundle.getString("id"))
+                .setTitle(bundle.getString("title"))
+                .setSubtitle(bundle.getString("subtitle", bundle.getString("artist")))
+                .setDescription(bundle.getString("description"))
+                .setIconUri(artwork)
+                .build();
+
+        int flags = 0;
+        if(browsable) flags |= MediaItem.FLAG_BROWSABLE;
+        if(playable) flags |= MediaItem.FLAG_PLAYABLE;
+
+        return new MediaItem(descr, flags);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.guichaguri.trackplayer.service.importer;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.MediaStore.Audio.Media;
+import java.util.List;
+
+/**
+ * Streams the audio files of the device library, querying the MediaStore with a selection and a sort order.
+ *
+ * Each row is turned into a track as the cursor moves, so the first chunk is ready
+ * long before the whole library has been read. Requires the storage permission.
+ *
+ * @author Guichaguri
+ */
+public class MediaStoreImporter extends TrackImporter {
+
+    private static final String[] PROJECTION = {
+            Media._ID, Media.TITLE, Media.ARTIST, Media.ALBUM, Media.ALBUM_ID, Media.DURATION, Media.YEAR
+    };
+
+    private static final Uri EXTERNAL_ALBUM_ART = Uri.parse("content://media/external/audio/albumart");
+    private static final Uri INTERNAL_ALBUM_ART = Uri.parse("content://media/internal/audio/albumart");
+
+    private final Uri contentUri;
+    private final Uri albumArtUri;
+    private final String selection;
+    private final String[] selectionArgs;
+    private final String sortOrder;
+
+    /**
+     * @param options The query options: selection, selectionArgs, sortOrder and internal
+     */
+    public MediaStoreImporter(Context context, Bundle options) {
+        super(context);
+
+        // The album art is looked up in the same volume as the audio files
+        boolean internal = options.getBoolean("internal", false);
+        this.contentUri = internal ? Media.INTERNAL_CONTENT_URI : Media.EXTERNAL_CONTENT_URI;
+        this.albumArtUri = internal ? INTERNAL_ALBUM_ART : EXTERNAL_ALBUM_ART;
+        this.selection = options.getString("selection", Media.IS_MUSIC + " != 0");
+        this.sortOrder = options.getString("sortOrder", Media.DEFAULT_SORT_ORDER);
+
+        // Arrays are converted to lists by the bridge
+        Object args = options.get("selectionArgs");
+
+        if(args instanceof List) {
+            List list = (List)args;
+            selectionArgs = new String[list.size()];
+            for(int i = 0; i < list.size(); i++) selectionArgs[i] = String.valueOf(list.get(i));
+        } else {
+            selectionArgs = null;
+        }
+    }
+
+    @Override
+    protected void load() throws Exception {
+        Cursor cursor = context.getContentResolver().query(contentUri, PROJECTION, selection, selectionArgs, sortOrder);
+        if(cursor == null) throw new IllegalStateException("The MediaStore is not available");
+
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow(Media._ID);
+            int titleColumn = cursor.getColumnIndexOrThrow(Media.TITLE);
+            int artistColumn = cursor.getColumnIndexOrThrow(Media.ARTIST);
+            int albumColumn = cursor.getColumnIndexOrThrow(Media.ALBUM);
+            int albumIdColumn = cursor.getColumnIndexOrThrow(Media.ALBUM_ID);
+            int durationColumn = cursor.getColumnIndexOrThrow(Media.DURATION);
+            int yearColumn = cursor.getColumnIndexOrThrow(Media.YEAR);
+
+            while(cursor.moveToNext()) {
+                String url = ContentUris.withAppendedId(contentUri, cursor.getLong(idColumn)).toString();
+
+                Bundle track = new Bundle();
+                track.putString("id", url);
+                track.putString("url", url);
+                track.putString("title", cursor.getString(titleColumn));
+                track.putString("artist", cursor.getString(artistColumn));
+                track.putString("album", cursor.getString(albumColumn));
+                track.putDouble("duration", cursor.getLong(durationColumn) / 1000D);
+
+                if(!cursor.isNull(yearColumn)) track.putString("date", cursor.getString(yearColumn));
+
+                if(!cursor.isNull(albumIdColumn)) {
+                    track.putString("artwork", ContentUris.withAppendedId(albumArtUri, cursor.getLong(albumIdColumn)).toString());
+                }
+
+                addTrack(track);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
@@ -0,0 +1,361 @@
+package com.guichaguri.trackplayer.service.importer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Xml;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.google.android.exoplayer2.util.Util;
+import com.guichaguri.trackplayer.service.player.DataSourcePool;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Streams a M3U, PLS, XSPF or JSON playlist from a local file or through the shared HTTP stack.
+ *
+ * The format is detected from the file extension, falling back to the first characters of the file.
+ * Relative track urls are resolved against the playlist url.
+ *
+ * @author Guichaguri
+ */
+public class PlaylistImporter extends TrackImporter {
+
+    private static final int FORMAT_M3U = 0;
+    private static final int FORMAT_PLS = 1;
+    private static final int FORMAT_XSPF = 2;
+    private static final int FORMAT_JSON = 3;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final DataSourcePool pool;
+    private final Uri uri;
+
+    public PlaylistImporter(Context context, DataSourcePool pool, Uri uri) {
+        super(context);
+        this.pool = pool;
+        this.uri = uri;
+    }
+
+    @Override
+    protected void load() throws Exception {
+        InputStream in = null;
+
+        try {
+            in = new BufferedInputStream(new DataSourceInputStream(pool.createDataSource(uri), new DataSpec(uri)), BUFFER_SIZE);
+            parse(in);
+        } finally {
+            Util.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Parses the playlist, adding its tracks
+     * @param in The stream, which has to support marks
+     */
+    void parse(InputStream in) throws Exception {
+        switch(detectFormat(in)) {
+            case FORMAT_PLS:
+                loadPls(createReader(in));
+                break;
+            case FORMAT_XSPF:
+                loadXspf(in);
+                break;
+            case FORMAT_JSON:
+                loadJson(createReader(in));
+                break;
+            default:
+                loadM3u(createReader(in));
+        }
+    }
+
+    private int detectFormat(InputStream in) throws IOException {
+        String path = uri.getLastPathSegment();
+        path = path == null ? "" : Util.toLowerInvariant(path);
+
+        if(path.endsWith(".m3u") || path.endsWith(".m3u8")) return FORMAT_M3U;
+        if(path.endsWith(".pls")) return FORMAT_PLS;
+        if(path.endsWith(".xspf")) return FORMAT_XSPF;
+        if(path.endsWith(".json")) return FORMAT_JSON;
+
+        // Looks at the first characters
+        in.mark(64);
+        int b, skipped = 0;
+        do {
+            b = in.read();
+        } while(++skipped < 64 && (Character.isWhitespace(b) || b == 0xEF || b == 0xBB || b == 0xBF));
+        in.reset();
+
+        if(b == '[') {
+            // Both PLS and JSON arrays start with a bracket
+            in.mark(64);
+            byte[] header = new byte[64];
+            int read = in.read(header);
+            in.reset();
+
+            String start = read > 0 ? new String(header, 0, read, "UTF-8").trim() : "";
+            return Util.toLowerInvariant(start).contains("[playlist]") ? FORMAT_PLS : FORMAT_JSON;
+        }
+
+        if(b == '{') return FORMAT_JSON;
+        if(b == '<') return FORMAT_XSPF;
+        return FORMAT_M3U;
+    }
+
+    private void loadM3u(BufferedReader reader) throws IOException {
+        String line;
+        Bundle info = null;
+
+        while((line = reader.readLine()) != null) {
+            line = line.trim();
+            if(line.isEmpty()) continue;
+
+            if(line.startsWith("#EXTINF:")) {
+                // #EXTINF:duration,Artist - Title
+                info = new Bundle();
+                int comma = line.indexOf(',');
+                String duration = comma == -1 ? line.substring(8) : line.substring(8, comma);
+                if(comma != -1) putTitle(info, line.substring(comma + 1).trim());
+
+                double seconds = parseDouble(duration.split(" ")[0]);
+                if(seconds > 0) info.putDouble("duration", seconds);
+            } else if(!line.startsWith("#")) {
+                Bundle track = info != null ? info : new Bundle();
+                info = null;
+
+                addTrack(track, line);
+            }
+        }
+    }
+
+    private void loadPls(BufferedReader reader) throws IOException {
+        String line;
+        int number = -1;
+        Bundle track = new Bundle();
+        String file = null;
+
+        while((line = reader.readLine()) != null) {
+            int equals = line.indexOf('=');
+            if(equals == -1) continue;
+
+            String key = Util.toLowerInvariant(line.substring(0, equals).trim());
+            String value = line.substring(equals + 1).trim();
+
+            // FileN, TitleN and LengthN
+            int digits = key.length();
+            while(digits > 0 && Character.isDigit(key.charAt(digits - 1))) digits--;
+            if(digits == key.length()) continue;
+
+            int n = Integer.parseInt(key.substring(digits));
+            key = key.substring(0, digits);
+
+            if(n != number) {
+                // The entries are usually grouped, the previous one is complete
+                if(file != null) addTrack(track, file);
+                number = n;
+                track = new Bundle();
+                file = null;
+            }
+
+            if(key.equals("file")) {
+                file = value;
+            } else if(key.equals("title")) {
+                putTitle(track, value);
+            } else if(key.equals("length")) {
+                double seconds = parseDouble(value);
+                if(seconds > 0) track.putDouble("duration", seconds);
+            }
+        }
+
+        if(file != null) addTrack(track, file);
+    }
+
+    private void loadXspf(InputStream in) throws Exception {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(in, null);
+
+        Bundle track = null;
+        String location = null;
+        int event;
+
+        while((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            if(event == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+
+                if(name.equals("track")) {
+                    track = new Bundle();
+                    location = null;
+                } else if(track != null) {
+                    switch(name) {
+                        case "location":
+                            // Only the first location is used
+                            String url = parser.nextText().trim();
+                            if(location == null) location = url;
+                            break;
+                        case "title":
+                            track.putString("title", parser.nextText().trim());
+                            break;
+                        case "creator":
+                            track.putString("artist", parser.nextText().trim());
+                            break;
+                        case "album":
+                            track.putString("album", parser.nextText().trim());
+                            break;
+                        case "annotation":
+                            track.putString("description", parser.nextText().trim());
+                            break;
+                        case "image":
+                            track.putString("artwork", resolve(parser.nextText().trim()));
+                            break;
+                        case "duration":
+                            // Milliseconds
+                            double duration = parseDouble(parser.nextText().trim());
+                            if(duration > 0) track.putDouble("duration", duration / 1000);
+                            break;
+                    }
+                }
+            } else if(event == XmlPullParser.END_TAG && parser.getName().equals("track")) {
+                if(track != null && location != null) addTrack(track, location);
+                track = null;
+            }
+        }
+    }
+
+    private void loadJson(BufferedReader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+
+        try {
+            if(reader.peek() == JsonToken.BEGIN_OBJECT) {
+                // {"tracks": [...]}
+                reader.beginObject();
+
+                while(reader.hasNext()) {
+                    if(reader.nextName().equals("tracks") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        loadJsonArray(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+
+                reader.endObject();
+            } else {
+                loadJsonArray(reader);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void loadJsonArray(JsonReader reader) throws IOException {
+        reader.beginArray();
+
+        while(reader.hasNext()) {
+            if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            Bundle track = readJsonObject(reader, true);
+            String url = track.getString("url");
+            track.remove("url");
+
+            if(url != null) addTrack(track, url);
+        }
+
+        reader.endArray();
+    }
+
+    private Bundle readJsonObject(JsonReader reader, boolean nested) throws IOException {
+        Bundle bundle = new Bundle();
+        reader.beginObject();
+
+        while(reader.hasNext()) {
+            String name = reader.nextName();
+
+            switch(reader.peek()) {
+                case STRING:
+                    bundle.putString(name, reader.nextString());
+                    break;
+                case NUMBER:
+                    if(name.equals("id")) {
+                        // Keeps the literal, so 12 doesn't become "12.0"
+                        bundle.putString(name, reader.nextString());
+                    } else {
+                        bundle.putDouble(name, reader.nextDouble());
+                    }
+                    break;
+                case BOOLEAN:
+                    bundle.putBoolean(name, reader.nextBoolean());
+                    break;
+                case BEGIN_OBJECT:
+                    // Only one level, such as the headers
+                    if(nested) {
+                        bundle.putBundle(name, readJsonObject(reader, false));
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+        return bundle;
+    }
+
+    private void addTrack(Bundle track, String url) throws IOException {
+        track.putString("url", resolve(url));
+
+        // Playlist entries have no ids, they're generated from the position
+        if(!track.containsKey("id")) track.putString("id", uri + "#" + getTrackCount());
+        else track.putString("id", String.valueOf(track.get("id")));
+
+        if(!track.containsKey("title")) track.putString("title", Uri.parse(url).getLastPathSegment());
+
+        addTrack(track);
+    }
+
+    private void putTitle(Bundle track, String title) {
+        int separator = title.indexOf(" - ");
+
+        if(separator == -1) {
+            track.putString("title", title);
+        } else {
+            track.putString("artist", title.substring(0, separator).trim());
+            track.putString("title", title.substring(separator + 3).trim());
+        }
+    }
+
+    private String resolve(String url) {
+        return UriUtil.resolve(uri.toString(), url);
+    }
+
+    private static double parseDouble(String str) {
+        try {
+            return Double.parseDouble(str);
+        } catch(NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    static BufferedReader createReader(InputStream in) throws IOException {
+        Reader reader = new InputStreamReader(in, "UTF-8");
+        BufferedReader buffered = new BufferedReader(reader, BUFFER_SIZE);
+
+        // Skips the UTF-8 byte order mark, the decoder keeps it as a character
+        buffered.mark(1);
+        if(buffered.read() != '\uFEFF') buffered.reset();
+
+        return buffered;
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.guichaguri.trackplayer.service.importer;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads tracks from a native source in a background thread, handing them to the main thread in chunks.
+ * The whole list is never held in memory nor sent through the bridge.
+ *
+ * @author Guichaguri
+ */
+public abstract class TrackImporter implements Runnable {
+
+    public interface Listener {
+
+        /**
+         * Called in the main thread for each chunk of tracks
+         */
+        void onTracksImported(List<Track> tracks);
+
+        /**
+         * Called in the main thread once all tracks have been imported
+         * @param count The amount of tracks
+         */
+        void onImportFinished(int count);
+
+        /**
+         * Called in the main thread when the import fails, the chunks already imported are kept
+         */
+        void onImportFailed(Exception ex);
+
+    }
+
+    private static final int CHUNK_SIZE = 500;
+
+    // The first chunk is smaller so the playback can start right away
+    private static final int FIRST_CHUNK_SIZE = 50;
+
+    protected final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Listener listener;
+    private int ratingType;
+
+    private List<Bundle> chunk = new ArrayList<>();
+    private int count = 0;
+
+    public TrackImporter(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public void setListener(Listener listener, int ratingType) {
+        this.listener = listener;
+        this.ratingType = ratingType;
+    }
+
+    @Override
+    public final void run() {
+        try {
+            load();
+            flush();
+
+            int total = count;
+            handler.post(() -> listener.onImportFinished(total));
+        } catch(Exception ex) {
+            handler.post(() -> listener.onImportFailed(ex));
+        }
+    }
+
+    /**
+     * Reads all tracks, calling {@link #addTrack(Bundle)} for each one
+     */
+    protected abstract void load() throws Exception;
+
+    /**
+     * Adds a track to the current chunk
+     * @param track The track properties, the same ones accepted from JS
+     */
+    protected void addTrack(Bundle track) throws InterruptedIOException {
+        if(Thread.interrupted()) throw new InterruptedIOException("The import has been cancelled");
+
+        chunk.add(track);
+        if(chunk.size() >= (count == 0 ? FIRST_CHUNK_SIZE : CHUNK_SIZE)) flush();
+    }
+
+    /**
+     * The amount of tracks added so far, useful to generate ids
+     */
+    protected int getTrackCount() {
+        return count + chunk.size();
+    }
+
+    private void flush() {
+        if(chunk.isEmpty()) return;
+
+        List<Track> tracks = Track.createTracks(context, chunk, ratingType);
+        count += tracks.size();
+        chunk = new ArrayList<>();
+
+        handler.post(() -> listener.onTracksImported(tracks));
+    }
+
+}
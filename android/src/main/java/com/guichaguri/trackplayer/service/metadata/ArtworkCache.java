@@ -0,0 +1,133 @@
+package com.guichaguri.trackplayer.service.metadata;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.request.transition.Transition;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.util.List;
+
+/**
+ * Loads the artwork of the tracks.
+ *
+ * Artworks are decoded straight to the size sent to the session and notification, and both the memory
+ * and disk caches hold the decoded size, keyed by the artwork uri. Tracks sharing the same album art
+ * therefore share the same bitmap, and prefetched artworks are ready by the time the track starts.
+ *
+ * @author Guichaguri
+ */
+public class ArtworkCache {
+
+    public interface Callback {
+        void onArtworkLoaded(Bitmap bitmap);
+    }
+
+    private final RequestManager glide;
+    private RequestOptions options;
+    private int size = 0;
+
+    // The target of the artwork being displayed, kept until it's replaced so its bitmap isn't reused
+    private ArtworkTarget currentTarget;
+    private ArtworkTarget pendingTarget;
+
+    public ArtworkCache(Context context) {
+        this.glide = Glide.with(context.getApplicationContext());
+        setSize(512);
+    }
+
+    /**
+     * Sets the maximum width and height of the decoded artworks
+     */
+    public void setSize(int size) {
+        if(size <= 0) size = Target.SIZE_ORIGINAL;
+        if(this.size == size) return;
+
+        this.size = size;
+        this.options = new RequestOptions()
+                .override(size)
+                .downsample(DownsampleStrategy.CENTER_INSIDE)
+                .format(DecodeFormat.PREFER_RGB_565)
+                .diskCacheStrategy(DiskCacheStrategy.ALL);
+    }
+
+    /**
+     * Loads an artwork, cancelling the previous request.
+     * The callback might be called before this method returns when the artwork is in the memory cache.
+     * @param uri The artwork uri
+     * @param callback The callback, called in the main thread
+     */
+    public void load(Uri uri, Callback callback) {
+        if(pendingTarget != null) glide.clear(pendingTarget);
+
+        pendingTarget = new ArtworkTarget(callback);
+        glide.asBitmap().load(uri).apply(options).into(pendingTarget);
+    }
+
+    /**
+     * Decodes the artworks of the tracks into the cache, so they're ready when the tracks start
+     * @param tracks The upcoming tracks
+     */
+    public void prefetch(List<Track> tracks) {
+        for(Track track : tracks) {
+            Uri uri = track.getArtwork();
+            if(uri != null) glide.asBitmap().load(uri).apply(options).preload();
+        }
+    }
+
+    /**
+     * Whether an artwork is still being loaded
+     */
+    public boolean isLoading() {
+        return pendingTarget != null;
+    }
+
+    /**
+     * Cancels the artwork being loaded and releases the current one
+     */
+    public void clear() {
+        if(pendingTarget != null) glide.clear(pendingTarget);
+        if(currentTarget != null) glide.clear(currentTarget);
+
+        pendingTarget = null;
+        currentTarget = null;
+    }
+
+    private class ArtworkTarget extends SimpleTarget<Bitmap> {
+
+        private final Callback callback;
+
+        private ArtworkTarget(Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onResourceReady(Bitmap resource, Transition<? super Bitmap> transition) {
+            if(pendingTarget != this) return;
+
+            ArtworkTarget previous = currentTarget;
+
+            currentTarget = this;
+            pendingTarget = null;
+            callback.onArtworkLoaded(resource);
+
+            // The previous bitmap was replaced, it can be released now
+            if(previous != null && previous != this) glide.clear(previous);
+        }
+
+        @Override
+        public void onLoadFailed(Drawable errorDrawable) {
+            if(pendingTarget == this) pendingTarget = null;
+        }
+
+    }
+
+}
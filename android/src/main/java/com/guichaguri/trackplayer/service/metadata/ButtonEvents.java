@@ -27,6 +27,20 @@ public class ButtonEvents extends MediaSessionCompat.Callback {
         service.emit(MusicEvents.BUTTON_PLAY, null);
     }
 
+    @Override
+    public void onPlayFromMediaId(String mediaId, Bundle extras) {
+        Bundle bundle = new Bundle();
+        bundle.putString("id", mediaId);
+        service.emit(MusicEvents.BUTTON_PLAY_FROM_ID, bundle);
+    }
+
+    @Override
+    public void onPlayFromSearch(String query, Bundle extras) {
+        Bundle bundle = new Bundle();
+        bundle.putString("query", query);
+        service.emit(MusicEvents.BUTTON_PLAY_FROM_SEARCH, bundle);
+    }
+
     @Override
     public void onPause() {
         service.emit(MusicEvents.BUTTON_PAUSE, null);
@@ -41,14 +55,12 @@ public class ButtonEvents extends MediaSessionCompat.Callback {
     public void onSkipToQueueItem(long id) {
         // Only allow 1st player to manage buttons.
         // TODO: Need to make this an API. Allow user to control which player should be responsible for managing buttons.
-        for(Track track : manager.getPlayback().get(0).getQueue()) {
-            if(track.queueId != id) continue;
-
-            Bundle bundle = new Bundle();
-            bundle.putString("id", track.id);
-            service.emit(MusicEvents.BUTTON_SKIP, bundle);
-            break;
-        }
+        Track track = manager.getPlayback().get(0).getTrackByQueueId(id);
+        if(track == null) return;
+
+        Bundle bundle = new Bundle();
+        bundle.putString("id", track.id);
+        service.emit(MusicEvents.BUTTON_SKIP, bundle);
     }
 
     @Override
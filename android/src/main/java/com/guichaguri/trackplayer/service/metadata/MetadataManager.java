@@ -1,12 +1,12 @@
 package com.guichaguri.trackplayer.service.metadata;
 
-import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.NotificationCompat;
@@ -14,15 +14,12 @@ import android.support.v4.app.NotificationCompat.Action;
 import android.support.v4.app.NotificationManagerCompat;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.RatingCompat;
-import android.support.v4.media.app.NotificationCompat.MediaStyle;
 import android.support.v4.media.session.MediaButtonReceiver;
 import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.MediaSessionCompat.QueueItem;
 import android.support.v4.media.session.PlaybackStateCompat;
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.RequestManager;
-import com.bumptech.glide.request.target.SimpleTarget;
-import com.bumptech.glide.request.transition.Transition;
 import com.facebook.react.views.imagehelper.ResourceDrawableIdHelper;
+import com.google.android.exoplayer2.Player;
 import com.guichaguri.trackplayer.R;
 import com.guichaguri.trackplayer.service.MusicManager;
 import com.guichaguri.trackplayer.service.MusicService;
@@ -30,6 +27,7 @@ import com.guichaguri.trackplayer.service.Utils;
 import com.guichaguri.trackplayer.service.models.Track;
 import com.guichaguri.trackplayer.service.player.ExoPlayback;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -37,6 +35,12 @@ import java.util.List;
  */
 public class MetadataManager {
 
+    private static final int PREFETCH_COUNT = 2;
+
+    // How many tracks before and after the current one are published in the session queue
+    private static final int QUEUE_WINDOW_BEFORE = 5;
+    private static final int QUEUE_WINDOW_AFTER = 20;
+
     private final MusicService service;
     private final MusicManager manager;
     private final MediaSessionCompat session;
@@ -46,8 +50,14 @@ public class MetadataManager {
     private int jumpInterval = 15;
     private long actions = 0;
     private long compactActions = 0;
-    private SimpleTarget<Bitmap> artworkTarget;
+    private ArtworkCache artwork;
+    private MediaMetadataCompat currentMetadata;
+    private long[] queueWindow = new long[0];
     private NotificationCompat.Builder builder;
+    private NotificationRenderer renderer;
+    private SessionPublisher publisher;
+    private NotificationRenderer.ActionLayout playingLayout, pausedLayout;
+    private boolean playing = false;
 
     private Action previousAction, rewindAction, playAction, pauseAction, stopAction, forwardAction, nextAction;
 
@@ -70,6 +80,8 @@ public class MetadataManager {
         session.setFlags(MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS |
                 MediaSessionCompat.FLAG_HANDLES_TRANSPORT_CONTROLS);
         session.setCallback(new ButtonEvents(service, manager));
+        publisher = new SessionPublisher(session);
+        artwork = new ArtworkCache(service);
 
         Context context = service.getApplicationContext();
         String packageName = context.getPackageName();
@@ -80,7 +92,6 @@ public class MetadataManager {
 
         builder.setContentIntent(PendingIntent.getActivity(context, 0, openApp, PendingIntent.FLAG_CANCEL_CURRENT));
 
-        builder.setSmallIcon(R.drawable.play);
         builder.setCategory(NotificationCompat.CATEGORY_TRANSPORT);
 
         // Stops the playback when the notification is swiped away
@@ -88,6 +99,10 @@ public class MetadataManager {
 
         // Make it visible in the lockscreen
         builder.setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
+
+        this.renderer = new NotificationRenderer(service, builder, session.getSessionToken());
+        renderer.setSmallIcon(R.drawable.play);
+        updateLayouts();
     }
 
     public MediaSessionCompat getSession() {
@@ -136,11 +151,19 @@ public class MetadataManager {
             }
         }
 
+        // Prepare the media buttons for both states
+        updateLayouts();
+
         // Update the color
-        builder.setColor(options.getInt("color", NotificationCompat.COLOR_DEFAULT));
+        renderer.setColor(options.getInt("color", NotificationCompat.COLOR_DEFAULT));
 
         // Update the icon
-        builder.setSmallIcon(getIcon(options, "icon", R.drawable.play));
+        renderer.setSmallIcon(getIcon(options, "icon", R.drawable.play));
+
+        // Update the artwork size limit
+        int maxArtworkSize = (int)options.getDouble("maxArtworkSize", 512);
+        publisher.setMaxArtworkSize(maxArtworkSize);
+        artwork.setSize(maxArtworkSize);
 
         // Update the jump interval
         jumpInterval = options.getInt("jumpInterval", 15);
@@ -149,7 +172,7 @@ public class MetadataManager {
         ratingType = options.getInt("ratingType", RatingCompat.RATING_NONE);
         session.setRatingType(ratingType);
 
-        updateNotification();
+        renderer.invalidate();
     }
 
     public int getRatingType() {
@@ -165,6 +188,8 @@ public class MetadataManager {
         Context context = service.getApplicationContext();
         NotificationManager manager = (NotificationManager) context.getSystemService(ns);
         manager.cancelAll();
+
+        renderer.reset();
     }
 
     /**
@@ -177,11 +202,8 @@ public class MetadataManager {
 
         MediaMetadataCompat.Builder metadata = track.toMediaMetadata();
 
-        metadata.putBitmap(MediaMetadataCompat.METADATA_KEY_ART, bitmap);
-        builder.setLargeIcon(bitmap);
-
-        session.setMetadata(metadata.build());
-        updateNotification();
+        renderer.setLargeIcon(bitmap);
+        currentMetadata = publisher.publishMetadata(metadata, bitmap);
     }
 
     /**
@@ -190,32 +212,73 @@ public class MetadataManager {
      */
     public void updateMetadata(Track track) {
         MediaMetadataCompat.Builder metadata = track.toMediaMetadata();
+        ExoPlayback playback = manager.getPlayback().get(getPlayerId());
+
+        renderer.setContentTitle(track.title);
+        renderer.setContentText(track.artist);
+        renderer.setSubText(track.album);
 
-        RequestManager rm = Glide.with(service.getApplicationContext());
-        if(artworkTarget != null) rm.clear(artworkTarget);
-
-        if(track.artwork != null) {
-            artworkTarget = rm.asBitmap()
-                    .load(track.artwork)
-                    .into(new SimpleTarget<Bitmap>() {
-                        @Override
-                        public void onResourceReady(Bitmap resource, Transition<? super Bitmap> transition) {
-                            metadata.putBitmap(MediaMetadataCompat.METADATA_KEY_ART, resource);
-                            builder.setLargeIcon(resource);
-
-                            session.setMetadata(metadata.build());
-                            updateNotification();
-                            artworkTarget = null;
-                        }
-                    });
+        Uri artworkUri = track.getArtwork();
+
+        if(artworkUri == null) {
+            renderer.setLargeIcon(null);
+            artwork.clear();
+        } else {
+            artwork.load(artworkUri, bitmap -> {
+                renderer.setLargeIcon(bitmap);
+                currentMetadata = publisher.publishMetadata(metadata, bitmap);
+            });
         }
 
-        builder.setContentTitle(track.title);
-        builder.setContentText(track.artist);
-        builder.setSubText(track.album);
+        // Publishes the metadata right away, unless the artwork was already in the memory cache
+        if(artworkUri == null || artwork.isLoading()) {
+            currentMetadata = publisher.publishMetadata(metadata, null);
+        }
 
-        session.setMetadata(metadata.build());
-        updateNotification();
+        // Decodes the artwork for the upcoming tracks
+        artwork.prefetch(playback.getNextTracks(PREFETCH_COUNT));
+    }
+
+    /**
+     * Updates only the changed properties of the current track, keeping the loaded artwork
+     * @param track The current track, already updated
+     * @param changes The properties that were changed
+     */
+    public void updateMetadata(Track track, Bundle changes) {
+        if(currentMetadata == null || artwork.isLoading() || changes.containsKey("artwork")) {
+            // The artwork is still loading or needs to be loaded again
+            updateMetadata(track);
+            return;
+        }
+
+        MediaMetadataCompat.Builder metadata = new MediaMetadataCompat.Builder(currentMetadata);
+
+        if(changes.containsKey("title")) {
+            metadata.putString(MediaMetadataCompat.METADATA_KEY_TITLE, track.title);
+            renderer.setContentTitle(track.title);
+        }
+        if(changes.containsKey("artist")) {
+            metadata.putString(MediaMetadataCompat.METADATA_KEY_ARTIST, track.artist);
+            renderer.setContentText(track.artist);
+        }
+        if(changes.containsKey("album")) {
+            metadata.putString(MediaMetadataCompat.METADATA_KEY_ALBUM, track.album);
+            renderer.setSubText(track.album);
+        }
+        if(changes.containsKey("date")) {
+            metadata.putString(MediaMetadataCompat.METADATA_KEY_DATE, track.date);
+        }
+        if(changes.containsKey("genre")) {
+            metadata.putString(MediaMetadataCompat.METADATA_KEY_GENRE, track.genre);
+        }
+        if(changes.containsKey("duration")) {
+            metadata.putLong(MediaMetadataCompat.METADATA_KEY_DURATION, track.duration);
+        }
+        if(changes.containsKey("rating") && track.rating != null) {
+            metadata.putRating(MediaMetadataCompat.METADATA_KEY_RATING, track.rating);
+        }
+
+        currentMetadata = publisher.publishMetadata(metadata, null);
     }
 
     /**
@@ -226,67 +289,92 @@ public class MetadataManager {
         ExoPlayback playback = playbacks.get(getPlayerId());
 
         int state = playback.getState();
-        boolean playing = Utils.isPlaying(state);
-        MediaStyle style = new MediaStyle();
-        List<Integer> compact = new ArrayList<>();
-        builder.mActions.clear();
+        playing = Utils.isPlaying(state);
 
-        // Adds the media buttons to the notification
+        renderer.setLayout(playing ? playingLayout : pausedLayout);
+        renderer.setVisible(!Utils.isStopped(state));
 
-        addAction(previousAction, PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS, compact);
-        addAction(rewindAction, PlaybackStateCompat.ACTION_REWIND, compact);
+        // Updates the media session state
+        Track track = playback.getCurrentTrack();
+        long queueId = track != null ? track.queueId : QueueItem.UNKNOWN_ID;
 
-        if(playing) {
-            addAction(pauseAction, PlaybackStateCompat.ACTION_PAUSE, compact);
-            style.setShowCancelButton(false);
-        } else {
-            addAction(playAction, PlaybackStateCompat.ACTION_PLAY, compact);
+        publisher.updateState(state, playback.getPosition(), playback.getRate(), playback.getBufferedPosition(), actions, queueId);
+    }
 
-            // Shows the cancel button on pre-lollipop versions due to a bug
-            style.setShowCancelButton(true);
-            style.setCancelButtonIntent(MediaButtonReceiver.buildMediaButtonPendingIntent(service, PlaybackStateCompat.ACTION_STOP));
+    /**
+     * Publishes the repeat and shuffle modes to the session
+     * @param playbacks List of players
+     */
+    public void updateModes(List<ExoPlayback> playbacks) {
+        ExoPlayback playback = playbacks.get(getPlayerId());
+
+        switch(playback.getRepeatMode()) {
+            case Player.REPEAT_MODE_ONE:
+                session.setRepeatMode(PlaybackStateCompat.REPEAT_MODE_ONE);
+                break;
+            case Player.REPEAT_MODE_ALL:
+                session.setRepeatMode(PlaybackStateCompat.REPEAT_MODE_ALL);
+                break;
+            default:
+                session.setRepeatMode(PlaybackStateCompat.REPEAT_MODE_NONE);
         }
 
-        addAction(stopAction, PlaybackStateCompat.ACTION_STOP, compact);
-        addAction(forwardAction, PlaybackStateCompat.ACTION_FAST_FORWARD, compact);
-        addAction(nextAction, PlaybackStateCompat.ACTION_SKIP_TO_NEXT, compact);
+        session.setShuffleMode(playback.getShuffleMode() ? PlaybackStateCompat.SHUFFLE_MODE_ALL : PlaybackStateCompat.SHUFFLE_MODE_NONE);
+    }
+
+    /**
+     * Publishes the tracks around the current one to the session queue
+     * @param playbacks List of players
+     */
+    public void updateQueue(List<ExoPlayback> playbacks) {
+        ExoPlayback playback = playbacks.get(getPlayerId());
+        List<Track> queue = playback.getQueue();
 
-        // Links the media session
-        style.setMediaSession(session.getSessionToken());
+        int current = Math.max(playback.getCurrentIndex(), 0);
+        int start = Math.max(current - QUEUE_WINDOW_BEFORE, 0);
+        int end = Math.min(current + QUEUE_WINDOW_AFTER + 1, queue.size());
 
-        // Updates the compact media buttons for the notification
-        if(!compact.isEmpty()) {
-            int[] compactIndexes = new int[compact.size()];
+        long[] window = new long[Math.max(end - start, 0)];
+        for(int i = 0; i < window.length; i++) window[i] = queue.get(start + i).queueId;
 
-            for(int i = 0; i < compact.size(); i++) compactIndexes[i] = compact.get(i);
+        // Only publishes when the tracks in the window changed
+        if(Arrays.equals(window, queueWindow)) return;
+        queueWindow = window;
 
-            style.setShowActionsInCompactView(compactIndexes);
-        }
+        List<QueueItem> items = new ArrayList<>(window.length);
+        for(int i = start; i < end; i++) items.add(queue.get(i).toQueueItem());
 
-        builder.setStyle(style);
+        session.setQueue(items);
+    }
 
-        // Updates the media session state
-        PlaybackStateCompat.Builder pb = new PlaybackStateCompat.Builder();
-        pb.setActions(actions);
-        pb.setState(state, playback.getPosition(), playback.getRate());
-        pb.setBufferedPosition(playback.getBufferedPosition());
+    /**
+     * Republishes the session queue if the track is part of the published window
+     * @param playbacks List of players
+     * @param track The track which has changed
+     */
+    public void invalidateQueueItem(List<ExoPlayback> playbacks, Track track) {
+        for(long id : queueWindow) {
+            if(id != track.queueId) continue;
 
-        session.setPlaybackState(pb.build());
-        updateNotification();
+            queueWindow = new long[0];
+            updateQueue(playbacks);
+            return;
+        }
     }
 
     public void setForeground(boolean foreground, boolean active) {
         this.foreground = foreground;
         this.session.setActive(active);
 
-        if(foreground) {
-            updateNotification();
-        } else {
-            service.stopForeground(false);
-        }
+        if(!foreground) service.stopForeground(false);
+        renderer.setForeground(foreground);
     }
 
     public void destroy() {
+        renderer.destroy();
+        publisher.destroy();
+        artwork.clear();
+
         if(foreground) {
             NotificationManagerCompat.from(service).cancel(1);
         } else {
@@ -297,22 +385,6 @@ public class MetadataManager {
         session.release();
     }
 
-    private void updateNotification() {
-        int state = manager.getPlayback().get(getPlayerId()).getState();
-        if (Utils.isStopped(state)) {
-            removeNotifications();
-            return;
-        }
-
-        Notification n = builder.build();
-
-        if(foreground) {
-            service.startForeground(1, n);
-        } else {
-            NotificationManagerCompat.from(service).notify(1, n);
-        }
-    }
-
     private int getIcon(Bundle options, String propertyName, int defaultIcon) {
         if(!options.containsKey(propertyName)) return defaultIcon;
 
@@ -332,11 +404,38 @@ public class MetadataManager {
         return new Action(icon, title, MediaButtonReceiver.buildMediaButtonPendingIntent(service, action));
     }
 
-    private void addAction(Action action, long id, List<Integer> compact) {
+    /**
+     * Builds the media buttons for the playing and paused states
+     */
+    private void updateLayouts() {
+        playingLayout = createLayout(pauseAction, PlaybackStateCompat.ACTION_PAUSE, true);
+        pausedLayout = createLayout(playAction, PlaybackStateCompat.ACTION_PLAY, false);
+
+        renderer.setLayout(playing ? playingLayout : pausedLayout);
+    }
+
+    private NotificationRenderer.ActionLayout createLayout(Action playPause, long playPauseId, boolean playing) {
+        List<Action> actions = new ArrayList<>();
+        List<Integer> compact = new ArrayList<>();
+
+        addAction(previousAction, PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS, actions, compact);
+        addAction(rewindAction, PlaybackStateCompat.ACTION_REWIND, actions, compact);
+        addAction(playPause, playPauseId, actions, compact);
+        addAction(stopAction, PlaybackStateCompat.ACTION_STOP, actions, compact);
+        addAction(forwardAction, PlaybackStateCompat.ACTION_FAST_FORWARD, actions, compact);
+        addAction(nextAction, PlaybackStateCompat.ACTION_SKIP_TO_NEXT, actions, compact);
+
+        int[] compactIndexes = new int[compact.size()];
+        for(int i = 0; i < compact.size(); i++) compactIndexes[i] = compact.get(i);
+
+        return renderer.createLayout(actions, compactIndexes, playing);
+    }
+
+    private void addAction(Action action, long id, List<Action> actions, List<Integer> compact) {
         if(action == null) return;
 
-        if((compactActions & id) != 0) compact.add(builder.mActions.size());
-        builder.mActions.add(action);
+        if((compactActions & id) != 0) compact.add(actions.size());
+        actions.add(action);
     }
 
     private int getPlayerId() {
@@ -0,0 +1,234 @@
+package com.guichaguri.trackplayer.service.metadata;
+
+import android.app.Notification;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationCompat.Action;
+import android.support.v4.app.NotificationManagerCompat;
+import android.support.v4.media.app.NotificationCompat.MediaStyle;
+import android.support.v4.media.session.MediaButtonReceiver;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+import android.text.TextUtils;
+import com.guichaguri.trackplayer.service.MusicService;
+import java.util.List;
+
+/**
+ * Posts the playback notification.
+ *
+ * Updates are coalesced within a frame and only posted when something visible has changed,
+ * as every post is an IPC call to the system.
+ *
+ * @author Guichaguri
+ */
+public class NotificationRenderer {
+
+    private static final int NOTIFICATION_ID = 1;
+    private static final long COALESCE_DELAY = 16;
+
+    private final MusicService service;
+    private final NotificationCompat.Builder builder;
+    private final MediaSessionCompat.Token token;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable renderRunnable = this::render;
+
+    private CharSequence title, text, subText;
+    private Bitmap largeIcon;
+    private int color = NotificationCompat.COLOR_DEFAULT;
+    private int smallIcon = 0;
+    private ActionLayout layout;
+
+    private boolean visible = false;
+    private boolean foreground = false;
+
+    private boolean scheduled = false;
+    private boolean changed = true;
+    private boolean posted = false;
+    private boolean postedForeground = false;
+
+    public NotificationRenderer(MusicService service, NotificationCompat.Builder builder, MediaSessionCompat.Token token) {
+        this.service = service;
+        this.builder = builder;
+        this.token = token;
+    }
+
+    public void setContentTitle(CharSequence title) {
+        if(TextUtils.equals(this.title, title)) return;
+        this.title = title;
+        builder.setContentTitle(title);
+        invalidate();
+    }
+
+    public void setContentText(CharSequence text) {
+        if(TextUtils.equals(this.text, text)) return;
+        this.text = text;
+        builder.setContentText(text);
+        invalidate();
+    }
+
+    public void setSubText(CharSequence subText) {
+        if(TextUtils.equals(this.subText, subText)) return;
+        this.subText = subText;
+        builder.setSubText(subText);
+        invalidate();
+    }
+
+    public void setLargeIcon(Bitmap largeIcon) {
+        if(this.largeIcon == largeIcon) return;
+        this.largeIcon = largeIcon;
+        builder.setLargeIcon(largeIcon);
+        invalidate();
+    }
+
+    public void setColor(int color) {
+        if(this.color == color) return;
+        this.color = color;
+        builder.setColor(color);
+        invalidate();
+    }
+
+    public void setSmallIcon(int smallIcon) {
+        if(this.smallIcon == smallIcon) return;
+        this.smallIcon = smallIcon;
+        builder.setSmallIcon(smallIcon);
+        invalidate();
+    }
+
+    /**
+     * Creates a prepared set of media buttons, which can be swapped in without any allocation
+     * @param actions The actions to display
+     * @param compactIndexes The indexes of the actions displayed in the compact view
+     * @param playing Whether the layout is meant to be used while the playback is active
+     * @return The layout
+     */
+    public ActionLayout createLayout(List<Action> actions, int[] compactIndexes, boolean playing) {
+        MediaStyle style = new MediaStyle();
+
+        if(playing) {
+            style.setShowCancelButton(false);
+        } else {
+            // Shows the cancel button on pre-lollipop versions due to a bug
+            style.setShowCancelButton(true);
+            style.setCancelButtonIntent(MediaButtonReceiver.buildMediaButtonPendingIntent(service, PlaybackStateCompat.ACTION_STOP));
+        }
+
+        // Links the media session
+        style.setMediaSession(token);
+
+        // Updates the compact media buttons for the notification
+        if(compactIndexes.length > 0) style.setShowActionsInCompactView(compactIndexes);
+
+        return new ActionLayout(actions, style);
+    }
+
+    /**
+     * Updates the media buttons
+     * @param layout The layout created through {@link #createLayout(List, int[], boolean)}
+     */
+    public void setLayout(ActionLayout layout) {
+        if(this.layout == layout) return;
+        this.layout = layout;
+
+        builder.mActions.clear();
+        for(int i = 0; i < layout.actions.size(); i++) builder.mActions.add(layout.actions.get(i));
+
+        builder.setStyle(layout.style);
+        invalidate();
+    }
+
+    /**
+     * Sets whether the notification should be displayed
+     */
+    public void setVisible(boolean visible) {
+        if(this.visible == visible) return;
+        this.visible = visible;
+        invalidate();
+    }
+
+    /**
+     * Sets whether the notification should keep the service in the foreground
+     */
+    public void setForeground(boolean foreground) {
+        this.foreground = foreground;
+
+        if(foreground) {
+            schedule();
+        } else {
+            postedForeground = false;
+        }
+    }
+
+    /**
+     * Marks the notification as changed and schedules a render
+     */
+    public void invalidate() {
+        changed = true;
+        schedule();
+    }
+
+    /**
+     * Schedules a render, merging all changes made until then into a single post
+     */
+    private void schedule() {
+        if(scheduled) return;
+        scheduled = true;
+        handler.postDelayed(renderRunnable, COALESCE_DELAY);
+    }
+
+    /**
+     * Should be called when the notification was removed outside of the renderer
+     */
+    public void reset() {
+        posted = false;
+        postedForeground = false;
+    }
+
+    public void destroy() {
+        handler.removeCallbacks(renderRunnable);
+        scheduled = false;
+    }
+
+    private void render() {
+        scheduled = false;
+
+        if(!visible) {
+            if(posted) NotificationManagerCompat.from(service).cancel(NOTIFICATION_ID);
+            posted = false;
+            postedForeground = false;
+            return;
+        }
+
+        // Nothing visible has changed since the last post
+        if(!changed && posted && postedForeground == foreground) return;
+
+        Notification n = builder.build();
+
+        if(foreground) {
+            service.startForeground(NOTIFICATION_ID, n);
+        } else {
+            NotificationManagerCompat.from(service).notify(NOTIFICATION_ID, n);
+        }
+
+        changed = false;
+        posted = true;
+        postedForeground = foreground;
+    }
+
+    /**
+     * The media buttons and the style of the notification
+     */
+    public static class ActionLayout {
+
+        private final List<Action> actions;
+        private final MediaStyle style;
+
+        private ActionLayout(List<Action> actions, MediaStyle style) {
+            this.actions = actions;
+            this.style = style;
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.guichaguri.trackplayer.service.metadata;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.media.MediaMetadataCompat;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+/**
+ * Publishes the playback state and metadata to the media session.
+ *
+ * Every publish is an IPC call fanned out to every controller (notification, lockscreen, Wear, Auto, bluetooth...),
+ * so the state is only published when something changes that controllers can't extrapolate by themselves.
+ * The position is extrapolated from the last update time, so progress updates are never needed.
+ *
+ * @author Guichaguri
+ */
+public class SessionPublisher {
+
+    /**
+     * The minimum time between two state publishes, bursts in between are merged
+     */
+    private static final long MIN_INTERVAL = 200;
+
+    /**
+     * How much the position can drift from the extrapolated one before it is considered a discontinuity
+     */
+    private static final long MAX_DRIFT = 500;
+
+    private final MediaSessionCompat session;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable publishRunnable = this::publishState;
+
+    private int state = PlaybackStateCompat.STATE_NONE;
+    private long position = PlaybackStateCompat.PLAYBACK_POSITION_UNKNOWN;
+    private float rate = 1;
+    private long actions = 0;
+    private long activeQueueId = MediaSessionCompat.QueueItem.UNKNOWN_ID;
+    private long updateTime = 0;
+
+    private PlaybackStateCompat pendingState;
+    private long lastPublish = 0;
+
+    private int maxArtworkSize = 512;
+    private Bitmap artworkSource, artworkScaled;
+
+    public SessionPublisher(MediaSessionCompat session) {
+        this.session = session;
+    }
+
+    /**
+     * Sets the maximum width and height of the artwork sent through the session
+     */
+    public void setMaxArtworkSize(int maxArtworkSize) {
+        if(this.maxArtworkSize == maxArtworkSize) return;
+
+        this.maxArtworkSize = maxArtworkSize;
+        this.artworkSource = null;
+        this.artworkScaled = null;
+    }
+
+    /**
+     * Updates the playback state. It will only be published when it differs from what controllers can extrapolate.
+     * @param state The playback state
+     * @param position The current position
+     * @param rate The playback speed
+     * @param bufferedPosition The buffered position
+     * @param actions The available actions
+     * @param activeQueueId The queue id of the current track
+     */
+    public void updateState(int state, long position, float rate, long bufferedPosition, long actions, long activeQueueId) {
+        long now = SystemClock.elapsedRealtime();
+
+        if(state == this.state && rate == this.rate && actions == this.actions &&
+                activeQueueId == this.activeQueueId && !isDiscontinuity(position, now)) {
+            // Nothing that the controllers can't figure out by themselves
+            return;
+        }
+
+        this.state = state;
+        this.position = position;
+        this.rate = rate;
+        this.actions = actions;
+        this.activeQueueId = activeQueueId;
+        this.updateTime = now;
+
+        PlaybackStateCompat.Builder pb = new PlaybackStateCompat.Builder();
+        pb.setActions(actions);
+        pb.setState(state, position, rate, now);
+        pb.setBufferedPosition(bufferedPosition);
+        pb.setActiveQueueItemId(activeQueueId);
+        pendingState = pb.build();
+
+        handler.removeCallbacks(publishRunnable);
+
+        if(now - lastPublish >= MIN_INTERVAL) {
+            publishState();
+        } else {
+            handler.postDelayed(publishRunnable, lastPublish + MIN_INTERVAL - now);
+        }
+    }
+
+    /**
+     * Publishes the metadata, capping the size of the artwork
+     * @param metadata The metadata
+     * @param artwork The artwork or {@code null} to keep the one in the metadata
+     * @return The published metadata
+     */
+    public MediaMetadataCompat publishMetadata(MediaMetadataCompat.Builder metadata, Bitmap artwork) {
+        if(artwork != null) {
+            metadata.putBitmap(MediaMetadataCompat.METADATA_KEY_ART, capArtwork(artwork));
+        }
+
+        MediaMetadataCompat m = metadata.build();
+        session.setMetadata(m);
+        return m;
+    }
+
+    public void destroy() {
+        handler.removeCallbacks(publishRunnable);
+    }
+
+    private void publishState() {
+        if(pendingState == null) return;
+
+        session.setPlaybackState(pendingState);
+        pendingState = null;
+        lastPublish = SystemClock.elapsedRealtime();
+    }
+
+    private boolean isDiscontinuity(long position, long now) {
+        if(this.position == PlaybackStateCompat.PLAYBACK_POSITION_UNKNOWN) return true;
+
+        long expected = this.position;
+
+        if(state == PlaybackStateCompat.STATE_PLAYING) {
+            expected += (long)((now - updateTime) * rate);
+        }
+
+        return Math.abs(position - expected) > MAX_DRIFT;
+    }
+
+    private Bitmap capArtwork(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+
+        if(maxArtworkSize <= 0 || (width <= maxArtworkSize && height <= maxArtworkSize)) return bitmap;
+        if(bitmap == artworkSource) return artworkScaled;
+
+        float scale = Math.min((float)maxArtworkSize / width, (float)maxArtworkSize / height);
+        int w = Math.max(1, Math.round(width * scale));
+        int h = Math.max(1, Math.round(height * scale));
+
+        artworkSource = bitmap;
+        artworkScaled = Bitmap.createScaledBitmap(bitmap, w, h, true);
+        return artworkScaled;
+    }
+
+}
@@ -3,26 +3,24 @@ package com.guichaguri.trackplayer.service.models;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Parcel;
 import android.support.v4.media.MediaDescriptionCompat;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.RatingCompat;
 import android.support.v4.media.session.MediaSessionCompat.QueueItem;
-import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
 import com.google.android.exoplayer2.source.MediaSource;
-import com.google.android.exoplayer2.source.dash.DashMediaSource;
-import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
-import com.google.android.exoplayer2.source.hls.HlsMediaSource;
-import com.google.android.exoplayer2.source.smoothstreaming.DefaultSsChunkSource;
-import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
-import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
 import com.guichaguri.trackplayer.service.Utils;
-import com.guichaguri.trackplayer.service.player.ExoPlayback;
+import com.guichaguri.trackplayer.service.player.DataSourcePool;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static android.support.v4.media.MediaMetadataCompat.*;
 
@@ -45,14 +43,46 @@ public class Track {
         return tracks;
     }
 
+    /**
+     * String keys that are stored as fields and stripped from the compact original item
+     */
+    private static final String[] STRING_KEYS = {"id", "title", "artist", "album", "date", "genre", "userAgent"};
+
+    /**
+     * Pool of repeated strings (artists, albums, genres...) shared between tracks
+     */
+    private static final Map<String, WeakReference<String>> stringPool = new WeakHashMap<>();
+
+    /**
+     * Shared instances of the ratings without a numeric value (unrated, hearts and thumbs)
+     */
+    private static final Map<String, RatingCompat> ratingPool = new HashMap<>();
+
+    /**
+     * The last queue id given to a track, queue ids are unique and increase monotonically
+     */
+    private static final AtomicLong lastQueueId = new AtomicLong(0);
+
     public String id;
-    public Uri uri;
+    private String uri;
 
     public TrackType type = TrackType.DEFAULT;
 
+    // The container or mime type hint, such as "mp3" or "audio/mpeg"
+    public String contentType;
+
     public String userAgent;
 
-    public Uri artwork;
+    // The request headers. The map is replaced as a whole, as it's read from the loader threads
+    public volatile Map<String, String> headers = Collections.emptyMap();
+
+    // The request timeouts in milliseconds, 0 for the default ones
+    public int connectTimeout, readTimeout;
+
+    // The clipped range of the file in milliseconds, such as a chapter. The end is 0 when it's not clipped
+    public long start, end;
+
+    private String artwork;
 
     public String title;
     public String artist;
@@ -60,7 +90,13 @@ public class Track {
     public String date;
     public String genre;
     public long duration;
-    public Bundle originalItem;
+
+    // The original item without the keys that are already stored as fields, serialized
+    private byte[] extras;
+    private boolean uriInExtras, artworkInExtras;
+
+    // The session queue item, built on the first request
+    private QueueItem queueItem;
 
     public RatingCompat rating;
 
@@ -68,7 +104,7 @@ public class Track {
 
     public Track(Context context, Bundle bundle, int ratingType) {
         id = bundle.getString("id");
-        uri = Utils.getUri(context, bundle, "url");
+        uri = toString(Utils.getUri(context, bundle, "url"));
 
         String trackType = bundle.getString("type", "default");
 
@@ -79,20 +115,205 @@ public class Track {
             }
         }
 
-        userAgent = bundle.getString("userAgent");
-        artwork = Utils.getUri(context, bundle, "artwork");
+        contentType = intern(bundle.getString("contentType"));
+        userAgent = intern(bundle.getString("userAgent"));
+        connectTimeout = (int)Utils.toMillis(bundle.getDouble("connectTimeout", 0));
+        readTimeout = (int)Utils.toMillis(bundle.getDouble("readTimeout", 0));
+        start = Utils.toMillis(bundle.getDouble("start", 0));
+        end = Utils.toMillis(bundle.getDouble("end", 0));
+        queueId = lastQueueId.incrementAndGet();
+        headers = toHeaders(bundle.getBundle("headers"));
+
+        setMetadata(context, bundle, ratingType);
+    }
+
+    /**
+     * Updates the track metadata in place, without touching the media source
+     * @param context The context
+     * @param data The new properties. The id, url, type, content type, user agent, timeouts and range are ignored.
+     *             The headers are only replaced when they're part of the changes, keeping the refreshed ones.
+     * @param ratingType The rating type
+     */
+    public void update(Context context, Bundle data, int ratingType) {
+        Bundle changes = new Bundle(data);
+        changes.remove("id");
+        changes.remove("url");
+        changes.remove("type");
+        changes.remove("contentType");
+        changes.remove("userAgent");
+        changes.remove("connectTimeout");
+        changes.remove("readTimeout");
+        changes.remove("start");
+        changes.remove("end");
+
+        Bundle bundle = getOriginalItem();
+        bundle.putAll(changes);
+
+        if(changes.containsKey("headers")) headers = toHeaders(changes.getBundle("headers"));
+
+        setMetadata(context, bundle, ratingType);
+        invalidate();
+    }
+
+    private void setMetadata(Context context, Bundle bundle, int ratingType) {
+        artwork = intern(toString(Utils.getUri(context, bundle, "artwork")));
 
         title = bundle.getString("title");
-        artist = bundle.getString("artist");
-        album = bundle.getString("album");
-        date = bundle.getString("date");
-        genre = bundle.getString("genre");
+        artist = intern(bundle.getString("artist"));
+        album = intern(bundle.getString("album"));
+        date = intern(bundle.getString("date"));
+        genre = intern(bundle.getString("genre"));
         duration = Utils.toMillis(bundle.getDouble("duration", 0));
+        if(duration == 0 && end > start) duration = end - start;
+
+        rating = intern(Utils.getRating(bundle, "rating", ratingType));
+
+        // Only keeps what can't be rebuilt from the fields
+        Bundle original = new Bundle(bundle);
+        for(String key : STRING_KEYS) {
+            if(original.get(key) instanceof String) original.remove(key);
+        }
+
+        uriInExtras = !(original.get("url") instanceof String);
+        artworkInExtras = !(original.get("artwork") instanceof String);
+        if(!uriInExtras) original.remove("url");
+        if(!artworkInExtras) original.remove("artwork");
+
+        extras = marshall(original);
+    }
+
+    public Uri getUri() {
+        return uri == null ? null : Uri.parse(uri);
+    }
+
+    public boolean isClipped() {
+        return start > 0 || end > 0;
+    }
+
+    public Uri getArtwork() {
+        return artwork == null ? null : Uri.parse(artwork);
+    }
+
+    /**
+     * Rebuilds the object that was originally sent from JS
+     * @return A new bundle containing all of the track properties
+     */
+    public Bundle getOriginalItem() {
+        Bundle bundle = unmarshall(extras);
+
+        putString(bundle, "id", id);
+        putString(bundle, "title", title);
+        putString(bundle, "artist", artist);
+        putString(bundle, "album", album);
+        putString(bundle, "date", date);
+        putString(bundle, "genre", genre);
+        putString(bundle, "userAgent", userAgent);
+        if(!uriInExtras) putString(bundle, "url", uri);
+        if(!artworkInExtras) putString(bundle, "artwork", artwork);
+
+        return bundle;
+    }
+
+    /**
+     * Converts the original item to a JS object
+     * @return A new map, which can be sent to JS
+     */
+    public WritableMap toWritableMap() {
+        return Arguments.fromBundle(getOriginalItem());
+    }
+
+    /**
+     * Drops the cached queue item, should be called whenever the track properties change
+     */
+    public void invalidate() {
+        queueItem = null;
+    }
+
+    private static Map<String, String> toHeaders(Bundle bundle) {
+        if(bundle == null || bundle.isEmpty()) return Collections.emptyMap();
+
+        Map<String, String> headers = new HashMap<>();
+
+        for(String key : bundle.keySet()) {
+            Object value = bundle.get(key);
+            if(value != null) headers.put(intern(key), value.toString());
+        }
+
+        return Collections.unmodifiableMap(headers);
+    }
+
+    private static void putString(Bundle bundle, String key, String value) {
+        if(value != null) bundle.putString(key, value);
+    }
+
+    private static String toString(Uri uri) {
+        return uri == null ? null : uri.toString();
+    }
+
+    private static String intern(String str) {
+        if(str == null) return null;
+
+        synchronized(stringPool) {
+            WeakReference<String> ref = stringPool.get(str);
+            String pooled = ref == null ? null : ref.get();
+
+            if(pooled == null) {
+                stringPool.put(str, new WeakReference<>(str));
+                return str;
+            }
+
+            return pooled;
+        }
+    }
+
+    private static RatingCompat intern(RatingCompat rating) {
+        String key;
+        int style = rating.getRatingStyle();
+
+        if(!rating.isRated()) {
+            key = "unrated:" + style;
+        } else if(style == RatingCompat.RATING_HEART) {
+            key = "heart:" + rating.hasHeart();
+        } else if(style == RatingCompat.RATING_THUMB_UP_DOWN) {
+            key = "thumb:" + rating.isThumbUp();
+        } else {
+            return rating;
+        }
+
+        synchronized(ratingPool) {
+            RatingCompat pooled = ratingPool.get(key);
+            if(pooled != null) return pooled;
+
+            ratingPool.put(key, rating);
+            return rating;
+        }
+    }
+
+    private static byte[] marshall(Bundle bundle) {
+        if(bundle.isEmpty()) return null;
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            bundle.writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
 
-        rating = Utils.getRating(bundle, "rating", ratingType);
+    private static Bundle unmarshall(byte[] data) {
+        if(data == null) return new Bundle();
 
-        queueId = System.currentTimeMillis();
-        originalItem = bundle;
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+
+            Bundle bundle = parcel.readBundle(Track.class.getClassLoader());
+            return bundle == null ? new Bundle() : bundle;
+        } finally {
+            parcel.recycle();
+        }
     }
 
     public MediaMetadataCompat.Builder toMediaMetadata() {
@@ -103,13 +324,13 @@ public class Track {
         builder.putString(METADATA_KEY_ALBUM, album);
         builder.putString(METADATA_KEY_DATE, date);
         builder.putString(METADATA_KEY_GENRE, genre);
-        builder.putString(METADATA_KEY_MEDIA_URI, uri.toString());
+        builder.putString(METADATA_KEY_MEDIA_URI, uri);
         builder.putString(METADATA_KEY_MEDIA_ID, id);
 
         builder.putLong(METADATA_KEY_DURATION, duration);
 
         if (artwork != null) {
-            builder.putString(METADATA_KEY_ART_URI, artwork.toString());
+            builder.putString(METADATA_KEY_ART_URI, artwork);
         }
 
         if (rating != null) {
@@ -120,56 +341,21 @@ public class Track {
     }
 
     public QueueItem toQueueItem() {
+        if(queueItem != null) return queueItem;
+
         MediaDescriptionCompat descr = new MediaDescriptionCompat.Builder()
                 .setTitle(title)
                 .setSubtitle(artist)
                 .setMediaId(id)
-                .setMediaUri(uri)
-                .setIconUri(artwork)
+                .setMediaUri(getUri())
+                .setIconUri(getArtwork())
                 .build();
 
-        return new QueueItem(descr, queueId);
+        queueItem = new QueueItem(descr, queueId);
+        return queueItem;
     }
 
-    public MediaSource toMediaSource(Context ctx, ExoPlayback playback) {
-        // Updates the user agent if not set
-        if(userAgent == null || !userAgent.isEmpty())
-            userAgent = Util.getUserAgent(ctx, "react-native-track-player");
-
-        DataSource.Factory ds;
-
-        if (Utils.isLocal(uri)) {
-
-            // Creates a local source factory
-            ds = new DefaultDataSourceFactory(ctx, userAgent);
-
-        } else {
-
-            // Creates a default http source factory, enabling cross protocol redirects
-            ds = new DefaultHttpDataSourceFactory(
-                    userAgent, null,
-                    DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS,
-                    DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS,
-                    true
-            );
-
-            ds = playback.enableCaching(ds);
-
-        }
-
-        switch(type) {
-            case DASH:
-                return new DashMediaSource.Factory(new DefaultDashChunkSource.Factory(ds), ds)
-                        .createMediaSource(uri);
-            case HLS:
-                return new HlsMediaSource.Factory(ds)
-                        .createMediaSource(uri);
-            case SMOOTH_STREAMING:
-                return new SsMediaSource.Factory(new DefaultSsChunkSource.Factory(ds), ds)
-                        .createMediaSource(uri);
-            default:
-                return new ExtractorMediaSource.Factory(ds)
-                        .createMediaSource(uri);
-        }
+    public MediaSource toMediaSource(DataSourcePool pool) {
+        return pool.createMediaSource(this);
     }
 }
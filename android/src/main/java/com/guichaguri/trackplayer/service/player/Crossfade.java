@@ -0,0 +1,46 @@
+package com.guichaguri.trackplayer.service.player;
+
+/**
+ * The length and the volume curves of a crossfade between two tracks
+ *
+ * @author Guichaguri
+ */
+public class Crossfade {
+
+    public static final String CURVE_LINEAR = "linear";
+    public static final String CURVE_EQUAL_POWER = "equal-power";
+
+    /**
+     * The crossfade length in milliseconds
+     */
+    public final long duration;
+
+    private final boolean equalPower;
+
+    /**
+     * @param duration The length in milliseconds
+     * @param curve The curve, {@link #CURVE_LINEAR} or {@link #CURVE_EQUAL_POWER}. Defaults to equal power.
+     */
+    public Crossfade(long duration, String curve) {
+        this.duration = duration;
+        this.equalPower = !CURVE_LINEAR.equals(curve);
+    }
+
+    /**
+     * Gets the volume of the incoming track
+     * @param fraction How much of the crossfade has been played, from 0 to 1
+     */
+    public float getFadeIn(float fraction) {
+        // The equal power curve keeps the loudness constant for uncorrelated tracks
+        return equalPower ? (float)Math.sin(fraction * Math.PI / 2) : fraction;
+    }
+
+    /**
+     * Gets the volume of the outgoing track
+     * @param fraction How much of the crossfade has been played, from 0 to 1
+     */
+    public float getFadeOut(float fraction) {
+        return equalPower ? (float)Math.cos(fraction * Math.PI / 2) : 1 - fraction;
+    }
+
+}
@@ -0,0 +1,332 @@
+package com.guichaguri.trackplayer.service.player;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.source.ClippingMediaSource;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.ads.AdsMediaSource.MediaSourceFactory;
+import com.google.android.exoplayer2.source.dash.DashMediaSource;
+import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
+import com.google.android.exoplayer2.source.hls.HlsMediaSource;
+import com.google.android.exoplayer2.source.smoothstreaming.DefaultSsChunkSource;
+import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.guichaguri.trackplayer.service.Utils;
+import com.guichaguri.trackplayer.service.models.Track;
+import com.guichaguri.trackplayer.service.models.TrackType;
+import com.guichaguri.trackplayer.service.player.extractor.ContainerHints;
+import com.guichaguri.trackplayer.service.player.extractor.IndexedMp3Extractor;
+import com.guichaguri.trackplayer.service.player.extractor.SeekIndexStore;
+import com.guichaguri.trackplayer.service.player.extractor.SeekIndexer;
+import com.guichaguri.trackplayer.service.player.extractor.SingleExtractorsFactory;
+import com.guichaguri.trackplayer.service.player.extractor.SniffCache;
+import com.guichaguri.trackplayer.service.player.extractor.SniffingExtractorsFactory;
+import com.guichaguri.trackplayer.service.player.http.DefaultHttpStack;
+import com.guichaguri.trackplayer.service.player.http.HeaderDataSource;
+import com.guichaguri.trackplayer.service.player.http.HeaderRegistry;
+import com.guichaguri.trackplayer.service.player.http.HttpStack;
+import com.guichaguri.trackplayer.service.player.http.Prewarmer;
+import com.guichaguri.trackplayer.service.player.http.TrackAuthenticator;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the configured data source and media source factories, shared by all players and tracks.
+ *
+ * Factories are keyed by their configuration (user agent, timeouts and cache policy), so adding tracks
+ * with the same configuration reuses the same factories instead of creating new ones.
+ * Headers are not part of the configuration, they're applied per request from the track being loaded.
+ * Adaptive streams are the exception, their factories are created per track so their segments get its headers.
+ * Remote sources go through the same {@link HttpStack}, which can keep the connections alive between tracks.
+ *
+ * @author Guichaguri
+ */
+public class DataSourcePool {
+
+    /**
+     * Sets the callback that refreshes the track headers when the server rejects them
+     * @param authenticator The authenticator or {@code null} to remove it
+     */
+    public static void setAuthenticator(TrackAuthenticator authenticator) {
+        HeaderRegistry.setAuthenticator(authenticator);
+    }
+
+    private final Context context;
+    private final String defaultUserAgent;
+
+    private final Map<String, DataSource.Factory> dataSources = new HashMap<>();
+    private final Map<String, MediaSourceFactory> mediaSources = new HashMap<>();
+
+    private final Prewarmer prewarmer = new Prewarmer();
+    private final HeaderRegistry headers = new HeaderRegistry();
+    private final SniffCache sniffCache = new SniffCache();
+    private final SeekIndexer seekIndexer;
+    private boolean seekIndexing = false;
+
+    private HttpStack httpStack = new DefaultHttpStack();
+    private SimpleCache cache;
+    private long cacheMaxSize = 0;
+
+    public DataSourcePool(Context context) {
+        this.context = context.getApplicationContext();
+        this.defaultUserAgent = Util.getUserAgent(context, "react-native-track-player");
+        this.seekIndexer = new SeekIndexer(context);
+    }
+
+    /**
+     * Sets the maximum size of the cache, recreating it if the size has changed
+     * @param maxSize The size in bytes or {@code 0} to disable the cache
+     */
+    public void setCacheMaxSize(long maxSize) {
+        if(maxSize == cacheMaxSize) return;
+
+        releaseCache();
+        cacheMaxSize = maxSize;
+
+        if(maxSize > 0) {
+            // There can only be one cache instance per folder, so it is shared by all players
+            File cacheDir = new File(context.getCacheDir(), "TrackPlayer");
+            cache = new SimpleCache(cacheDir, new LeastRecentlyUsedCacheEvictor(maxSize));
+        }
+    }
+
+    /**
+     * Sets whether seek indexes should be built for MP3 files, making seeks exact in VBR files without seek tables
+     */
+    public void setSeekIndexing(boolean seekIndexing) {
+        if(this.seekIndexing == seekIndexing) return;
+
+        this.seekIndexing = seekIndexing;
+        mediaSources.clear();
+    }
+
+    /**
+     * Builds the seek index of a track in the background, if it's an MP3 file that is local or fully cached
+     */
+    public void index(Track track) {
+        if(!seekIndexing || track.type != TrackType.DEFAULT || getExtractor(track) != Mp3Extractor.class) return;
+
+        seekIndexer.index(track.getUri(), cache);
+    }
+
+    /**
+     * Sets the HTTP stack used by the remote sources, keeping the current one if it's equivalent
+     */
+    public void setHttpStack(HttpStack stack) {
+        if(httpStack.isEquivalent(stack)) return;
+
+        dataSources.clear();
+        mediaSources.clear();
+
+        httpStack.release();
+        httpStack = stack;
+    }
+
+    /**
+     * Gets a data source factory
+     * @param track The track that will be loaded
+     * @return The shared factory
+     */
+    public DataSource.Factory getDataSourceFactory(Track track) {
+        return getDataSourceFactory(getKey(track), track);
+    }
+
+    /**
+     * Creates a media source through the shared factories, registering the track for its headers
+     * @param track The track
+     * @return The media source
+     */
+    public MediaSource createMediaSource(Track track) {
+        headers.register(track);
+
+        MediaSource source = createSource(track);
+        if(!track.isClipped()) return source;
+
+        // Clips of the same file share the data source, the cached spans, the sniffed extractor
+        // and the seek index, as all of them are keyed by the uri
+        long end = track.end > 0 ? C.msToUs(track.end) : C.TIME_END_OF_SOURCE;
+        return new ClippingMediaSource(source, C.msToUs(track.start), end);
+    }
+
+    private MediaSource createSource(Track track) {
+        String dsKey = getKey(track);
+        Uri uri = track.getUri();
+
+        if(track.type == TrackType.DEFAULT) {
+            Class<? extends Extractor> extractor = getExtractor(track);
+
+            if(extractor == Mp3Extractor.class && seekIndexing) {
+                // Checks for an index when the extractor is initialized
+                SeekIndexStore store = seekIndexer.getStore();
+                String url = uri.toString();
+
+                return new ExtractorMediaSource.Factory(getDataSourceFactory(dsKey, track))
+                        .setExtractorsFactory(() -> new Extractor[] {new IndexedMp3Extractor(store, url)})
+                        .createMediaSource(uri);
+            }
+
+            if(extractor == null) {
+                ExtractorsFactory extractors = new SniffingExtractorsFactory(uri.toString(), sniffCache);
+
+                return new ExtractorMediaSource.Factory(getDataSourceFactory(dsKey, track))
+                        .setExtractorsFactory(extractors)
+                        .createMediaSource(uri);
+            }
+
+            String key = dsKey + '\n' + extractor.getName();
+            MediaSourceFactory factory = mediaSources.get(key);
+
+            if(factory == null) {
+                factory = new ExtractorMediaSource.Factory(getDataSourceFactory(dsKey, track))
+                        .setExtractorsFactory(new SingleExtractorsFactory(extractor));
+                mediaSources.put(key, factory);
+            }
+
+            return factory.createMediaSource(uri);
+        }
+
+        // Adaptive streams get their own factories, bound to the track,
+        // as their segments can't be matched to the track by uri
+        return createMediaSourceFactory(track.type, createDataSourceFactory(track, track)).createMediaSource(uri);
+    }
+
+    /**
+     * Creates a data source for a file that isn't part of a queue, such as a sound effect
+     * @param uri The file uri
+     * @return An uncached data source
+     */
+    public DataSource createDataSource(Uri uri) {
+        HttpDataSource.Factory http = httpStack.createFactory(defaultUserAgent, 0, 0);
+        DataSource fallback = new DefaultDataSourceFactory(context, null, http).createDataSource();
+
+        return new LocalFileDataSource(context, fallback);
+    }
+
+    /**
+     * Should be called when a track is removed from a queue
+     */
+    public void release(Track track) {
+        headers.unregister(track);
+    }
+
+    /**
+     * Prewarms the connections to the hosts of the tracks
+     * @param tracks The upcoming tracks
+     */
+    public void prewarm(List<Track> tracks) {
+        for(Track track : tracks) {
+            Uri uri = track.getUri();
+            if(uri != null) prewarmer.prewarm(httpStack, uri, getUserAgent(track.userAgent), track.headers);
+        }
+    }
+
+    public void destroy() {
+        releaseCache();
+        cacheMaxSize = 0;
+
+        prewarmer.destroy();
+        seekIndexer.destroy();
+        headers.clear();
+        httpStack.release();
+    }
+
+    private DataSource.Factory getDataSourceFactory(String key, Track track) {
+        DataSource.Factory ds = dataSources.get(key);
+        if(ds != null) return ds;
+
+        ds = createDataSourceFactory(track, null);
+        dataSources.put(key, ds);
+        return ds;
+    }
+
+    /**
+     * Creates a data source factory with the configuration of a track
+     * @param track The track
+     * @param bound The track all requests belong to or {@code null} to look it up by uri
+     */
+    private DataSource.Factory createDataSourceFactory(Track track, Track bound) {
+        DataSource.Factory ds;
+        String userAgent = getUserAgent(track.userAgent);
+        HttpDataSource.Factory http = httpStack.createFactory(userAgent, track.connectTimeout, track.readTimeout);
+
+        if(Utils.isLocal(track.getUri())) {
+
+            // Creates a local source factory, reading the files through their channels when possible
+            ds = new DefaultDataSourceFactory(context, null, new HeaderDataSource.Factory(http, headers, bound));
+            ds = new LocalFileDataSource.Factory(context, ds);
+
+        } else {
+
+            // Creates a remote source factory through the HTTP stack
+            ds = new HeaderDataSource.Factory(http, headers, bound);
+
+            if(cache != null) {
+                ds = new CacheDataSourceFactory(cache, ds, CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR, cacheMaxSize);
+            }
+
+        }
+
+        return ds;
+    }
+
+    private Class<? extends Extractor> getExtractor(Track track) {
+        // Tries to skip the sniffing through the content type or a previous sniff
+        Class<? extends Extractor> extractor = ContainerHints.get(track.contentType);
+        if(extractor == null) extractor = sniffCache.get(track.getUri().toString());
+        return extractor;
+    }
+
+    private MediaSourceFactory createMediaSourceFactory(TrackType type, DataSource.Factory ds) {
+        switch(type) {
+            case DASH:
+                return new DashMediaSource.Factory(new DefaultDashChunkSource.Factory(ds), ds);
+            case HLS:
+                return new HlsMediaSource.Factory(ds);
+            case SMOOTH_STREAMING:
+                return new SsMediaSource.Factory(new DefaultSsChunkSource.Factory(ds), ds);
+            default:
+                return new ExtractorMediaSource.Factory(ds);
+        }
+    }
+
+    private String getUserAgent(String userAgent) {
+        return userAgent == null || userAgent.isEmpty() ? defaultUserAgent : userAgent;
+    }
+
+    private String getKey(Track track) {
+        // Local sources are never cached
+        String policy = Utils.isLocal(track.getUri()) ? "local" : (cache != null ? "cached" : "remote");
+        return policy + '\n' + getUserAgent(track.userAgent) + '\n' + track.connectTimeout + '\n' + track.readTimeout;
+    }
+
+    private void releaseCache() {
+        // The factories might be wrapping the old cache
+        dataSources.clear();
+        mediaSources.clear();
+
+        if(cache != null) {
+            try {
+                cache.release();
+            } catch(Exception ex) {
+                Log.w(Utils.LOG, "Couldn't release the cache", ex);
+            }
+            cache = null;
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.guichaguri.trackplayer.service.player;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.util.Log;
 import com.facebook.react.bridge.Promise;
@@ -9,26 +11,26 @@ import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.Player.EventListener;
+import com.google.android.exoplayer2.PlayerMessage;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.Timeline.Window;
 import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.ShuffleOrder;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
-import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
-import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
-import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.guichaguri.trackplayer.service.MusicManager;
 import com.guichaguri.trackplayer.service.Utils;
 import com.guichaguri.trackplayer.service.models.Track;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 /**
  * @author Guichaguri
@@ -37,82 +39,284 @@ public class ExoPlayback implements EventListener {
 
     private final Context context;
     private final MusicManager manager;
-    private final SimpleExoPlayer player;
-    private final SimpleCache cache;
-    private final long cacheMaxSize;
+    private final DataSourcePool pool;
+
+    // The player that is currently playing, and the one buffering the likely next track in the warm standby mode
+    private SimpleExoPlayer player;
+    private SimpleExoPlayer standby;
 
     private final int playerId;
 
+    // How many upcoming tracks are prewarmed, and how long before the end of the current track
+    private static final int PREWARM_COUNT = 3;
+    private static final long PREWARM_BEFORE_END = 15000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private PlayerMessage prewarmMessage;
+
+    // How often the volumes are updated during a crossfade, and how long before the end it finishes
+    private static final long CROSSFADE_STEP = 50;
+    private static final long CROSSFADE_END_MARGIN = 100;
+
+    private Crossfade crossfade;
+    private final List<PlayerMessage> crossfadeMessages = new ArrayList<>();
+    private boolean fading = false;
+    private float volume = 1;
+
+    // How many idle queues keep their source trees, the older ones only keep their tracks
+    private static final int MAX_QUEUE_SOURCES = 2;
+
+    private String queueName = PlaybackQueue.DEFAULT;
+    private final Map<String, PlaybackQueue> idleQueues = new LinkedHashMap<>(4, 0.75F, true);
+
     private ConcatenatingMediaSource source;
+    private long shuffleSeed = new Random().nextLong();
+    private Track standbyHint;
     private List<Track> queue = Collections.synchronizedList(new ArrayList<>());
+    private Map<Long, Track> queueIds = new HashMap<>();
+    private QueueIndex searchIndex = new QueueIndex();
+
+    // The standby player only holds the track it buffers, it gets the rest of the queue once it takes over
+    private ConcatenatingMediaSource standbySource;
+    private Track standbyTrack;
+
+    // The current track while the rest of the queue is being added around it, after the players are swapped
+    private Track fillTrack;
 
     // https://github.com/google/ExoPlayer/issues/2728
     private int lastKnownWindow = C.INDEX_UNSET;
     private long lastKnownPosition = C.POSITION_UNSET;
     private int previousState = PlaybackStateCompat.STATE_NONE;
 
-    public ExoPlayback(Context context, MusicManager manager, SimpleExoPlayer player, long maxCacheSize, int playerId) {
+    /**
+     * @param standby A second player that buffers the upcoming track, or {@code null} to disable the warm standby mode
+     */
+    public ExoPlayback(Context context, MusicManager manager, SimpleExoPlayer player, SimpleExoPlayer standby,
+                       DataSourcePool pool, int playerId) {
         this.context = context;
         this.manager = manager;
         this.player = player;
-        this.cacheMaxSize = maxCacheSize;
+        this.standby = standby;
+        this.pool = pool;
         this.playerId = playerId;
 
-        if(cacheMaxSize > 0) {
-            File cacheDir = new File(context.getCacheDir(), "TrackPlayer");
-            cache = new SimpleCache(cacheDir, new LeastRecentlyUsedCacheEvictor(cacheMaxSize));
-        } else {
-            cache = null;
-        }
-
         player.addListener(this);
         resetQueue();
     }
 
     private void resetQueue() {
+        for(Track track : queue) pool.release(track);
+
         queue.clear();
+        queueIds.clear();
+        searchIndex.clear();
 
-        source = new ConcatenatingMediaSource();
+        source = createSource(shuffleSeed);
         player.prepare(source);
 
+        clearStandby();
+        standbyHint = null;
+        fillTrack = null;
+
         lastKnownWindow = C.INDEX_UNSET;
         lastKnownPosition = C.POSITION_UNSET;
 
         manager.onReset(playerId);
     }
 
-    public DataSource.Factory enableCaching(DataSource.Factory ds) {
-        if(cache == null || cacheMaxSize <= 0) return ds;
-
-        return new CacheDataSourceFactory(cache, ds, CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR, cacheMaxSize);
+    private ConcatenatingMediaSource createSource(long seed) {
+        return new ConcatenatingMediaSource(false, new SeededShuffleOrder(0, seed, C.INDEX_UNSET));
     }
 
     public List<Track> getQueue() {
         return queue;
     }
 
+    public String getQueueName() {
+        return queueName;
+    }
+
+    /**
+     * Gets the names of the active queue and the idle ones
+     */
+    public List<String> getQueueNames() {
+        List<String> names = new ArrayList<>();
+        names.add(queueName);
+        names.addAll(idleQueues.keySet());
+        return names;
+    }
+
+    /**
+     * Switches to another named queue, keeping the current one idle with its position.
+     *
+     * Only the tracks and the media source objects are kept: preparing the player with the queue source
+     * releases and prepares all of its children again, so the periods are reloaded and the buffers refilled.
+     * The source objects themselves are rebuilt when the queue had them dropped or doesn't exist yet.
+     * The standby player is cleared, it buffers the upcoming track once the new timeline is ready.
+     * @param name The queue name
+     */
+    public void switchQueue(String name) {
+        if(name.equals(queueName)) return;
+
+        cancelCrossfade();
+
+        PlaybackQueue current = new PlaybackQueue(queue, queueIds, searchIndex, shuffleSeed, source);
+        current.window = getCurrentIndex();
+        current.position = player.getCurrentPosition();
+
+        PlaybackQueue next = idleQueues.remove(name);
+        idleQueues.put(queueName, current);
+
+        if(next == null) {
+            long seed = new Random().nextLong();
+            next = new PlaybackQueue(Collections.synchronizedList(new ArrayList<>()), new HashMap<>(), new QueueIndex(),
+                    seed, createSource(seed));
+        } else if(!next.hasSources()) {
+            rebuildSources(next);
+        }
+
+        trimQueueSources();
+
+        queueName = name;
+        queue = next.tracks;
+        queueIds = next.queueIds;
+        searchIndex = next.index;
+        shuffleSeed = next.shuffleSeed;
+        source = next.source;
+        standbyHint = null;
+        fillTrack = null;
+
+        // The track change is notified once the new timeline is ready
+        lastKnownWindow = C.INDEX_UNSET;
+        lastKnownPosition = C.POSITION_UNSET;
+
+        player.prepare(source, true, true);
+        if(next.window != C.INDEX_UNSET && next.window < queue.size()) player.seekTo(next.window, next.position);
+
+        clearStandby();
+
+        manager.onQueueUpdate(playerId);
+    }
+
+    /**
+     * Removes an idle queue
+     * @return Whether the queue was removed, the active queue can't be removed
+     */
+    public boolean removeQueue(String name) {
+        PlaybackQueue removed = idleQueues.remove(name);
+        if(removed == null) return false;
+
+        if(removed.hasSources()) {
+            for(Track track : removed.tracks) pool.release(track);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the source trees of the least recently used idle queues
+     */
+    private void trimQueueSources() {
+        int count = 0;
+
+        for(PlaybackQueue q : idleQueues.values()) {
+            if(q.hasSources()) count++;
+        }
+
+        for(PlaybackQueue q : idleQueues.values()) {
+            if(count <= MAX_QUEUE_SOURCES) break;
+            if(!q.hasSources()) continue;
+
+            q.source = null;
+            for(Track track : q.tracks) pool.release(track);
+            count--;
+        }
+    }
+
+    private void rebuildSources(PlaybackQueue q) {
+        List<MediaSource> sources = new ArrayList<>();
+
+        for(Track track : q.tracks) {
+            sources.add(track.toMediaSource(pool));
+        }
+
+        q.source = createSource(q.shuffleSeed);
+        q.source.addMediaSources(sources);
+    }
+
+    public Track getTrackByQueueId(long queueId) {
+        return queueIds.get(queueId);
+    }
+
     public void add(Track track, int index, Promise promise) {
         queue.add(index, track);
-        source.addMediaSource(index, track.toMediaSource(context, this), Utils.toRunnable(promise));
+        queueIds.put(track.queueId, track);
+        searchIndex.add(track, index);
+        source.addMediaSource(index, track.toMediaSource(pool), Utils.toRunnable(promise));
 
         if (queue.size() == 1) {
             player.prepare(source);
         }
+
+        manager.onQueueUpdate(playerId);
     }
 
     public void add(Collection<Track> tracks, int index, Promise promise) {
+        add(tracks, index, Utils.toRunnable(promise));
+    }
+
+    /**
+     * Adds tracks to the queue
+     * @param callback Called once the sources have been added, may be null
+     */
+    public void add(Collection<Track> tracks, int index, Runnable callback) {
         List<MediaSource> trackList = new ArrayList<>();
+        int position = index;
 
         for(Track track : tracks) {
-            trackList.add(track.toMediaSource(context, this));
+            trackList.add(track.toMediaSource(pool));
+            queueIds.put(track.queueId, track);
+            searchIndex.add(track, position++);
         }
 
         queue.addAll(index, tracks);
-        source.addMediaSources(index, trackList, Utils.toRunnable(promise));
+        source.addMediaSources(index, trackList, callback);
 
         if (queue.size() == tracks.size()) {
             player.prepare(source);
         }
+
+        manager.onQueueUpdate(playerId);
+    }
+
+    /**
+     * Appends tracks to a named queue, which doesn't have to be the active one
+     * @param name The queue name
+     * @return Whether the queue exists
+     */
+    public boolean addToQueue(String name, Collection<Track> tracks) {
+        if(name.equals(queueName)) {
+            add(tracks, queue.size(), (Runnable)null);
+            return true;
+        }
+
+        PlaybackQueue q = idleQueues.get(name);
+        if(q == null) return false;
+
+        int index = q.tracks.size();
+        int position = index;
+        List<MediaSource> trackList = new ArrayList<>();
+
+        for(Track track : tracks) {
+            // Queues that had their sources dropped only keep the tracks
+            if(q.hasSources()) trackList.add(track.toMediaSource(pool));
+            q.queueIds.put(track.queueId, track);
+            q.index.add(track, position++);
+        }
+
+        q.tracks.addAll(tracks);
+        if(q.hasSources()) q.source.addMediaSources(index, trackList);
+
+        return true;
     }
 
     public void remove(List<Integer> indexes, Promise promise) {
@@ -121,7 +325,16 @@ public class ExoPlayback implements EventListener {
         for(int i = indexes.size() - 1; i >= 0; i--) {
             int index = indexes.get(i);
 
-            queue.remove(index);
+            Track track = queue.remove(index);
+            queueIds.remove(track.queueId);
+            searchIndex.remove(track);
+            pool.release(track);
+
+            if(track == standbyHint) standbyHint = null;
+            if(track == standbyTrack) {
+                cancelCrossfade();
+                clearStandby();
+            }
 
             if(i == 0) {
                 source.removeMediaSource(index, Utils.toRunnable(promise));
@@ -129,30 +342,111 @@ public class ExoPlayback implements EventListener {
                 source.removeMediaSource(index, null);
             }
         }
+
+        manager.onQueueUpdate(playerId);
     }
 
     public void removeUpcomingTracks() {
-        int currentIndex = player.getCurrentWindowIndex();
+        int currentIndex = getWindowIndex();
         if (currentIndex == C.INDEX_UNSET) return;
 
         for (int i = queue.size() - 1; i > currentIndex; i--) {
-            queue.remove(i);
+            Track track = queue.remove(i);
+            queueIds.remove(track.queueId);
+            searchIndex.remove(track);
+            pool.release(track);
             source.removeMediaSource(i, null);
+
+            if(track == standbyHint) standbyHint = null;
+            if(track == standbyTrack) {
+                cancelCrossfade();
+                clearStandby();
+            }
         }
+
+        manager.onQueueUpdate(playerId);
+    }
+
+    /**
+     * Indexes a track of the active queue again after its metadata has changed
+     */
+    public void onTrackUpdated(Track track) {
+        searchIndex.update(track);
+    }
+
+    /**
+     * Searches the title, artist and album of the tracks in the active queue
+     * @param positions The list the positions of the matches are added to, in the queue order
+     * @return The total amount of matches
+     */
+    public int search(String query, int offset, int limit, List<Integer> positions) {
+        return searchIndex.search(query, queue, offset, limit, positions);
+    }
+
+    public int getCurrentIndex() {
+        int index = getWindowIndex();
+        return index == C.INDEX_UNSET || index < 0 || index >= queue.size() ? C.INDEX_UNSET : index;
     }
 
     public Track getCurrentTrack() {
-        int index = player.getCurrentWindowIndex();
+        int index = getWindowIndex();
         return index == C.INDEX_UNSET || index < 0 || index >= queue.size() ? null : queue.get(index);
     }
 
+    /**
+     * Gets the tracks that will play after the current one, following the repeat and shuffle modes
+     * @param count The maximum amount of tracks
+     * @return The upcoming tracks
+     */
+    public List<Track> getNextTracks(int count) {
+        List<Track> tracks = new ArrayList<>();
+        Timeline timeline = player.getCurrentTimeline();
+        int index = player.getCurrentWindowIndex();
+
+        if(timeline.isEmpty() || index == C.INDEX_UNSET) return tracks;
+
+        // Repeating the current track would only return itself
+        int repeatMode = player.getRepeatMode() == Player.REPEAT_MODE_ONE ? Player.REPEAT_MODE_OFF : player.getRepeatMode();
+        boolean shuffle = player.getShuffleModeEnabled();
+
+        for(int i = 0; i < count; i++) {
+            index = timeline.getNextWindowIndex(index, repeatMode, shuffle);
+            if(index == C.INDEX_UNSET || index >= queue.size()) break;
+
+            tracks.add(queue.get(index));
+        }
+
+        return tracks;
+    }
+
+    /**
+     * Sets the track the standby player should buffer instead of the next one, until the current track changes
+     * @param id The track id or {@code null} to buffer the next track
+     * @return Whether the track is in the queue
+     */
+    public boolean setStandbyHint(String id) {
+        Track hint = null;
+
+        if(id != null) {
+            for(Track track : queue) {
+                if(id.equals(track.id)) {
+                    hint = track;
+                    break;
+                }
+            }
+
+            if(hint == null) return false;
+        }
+
+        standbyHint = hint;
+        updateStandby();
+        return true;
+    }
+
     public void skip(String id, Promise promise) {
         for(int i = 0; i < queue.size(); i++) {
             if(id.equals(queue.get(i).id)) {
-                lastKnownWindow = player.getCurrentWindowIndex();
-                lastKnownPosition = player.getCurrentPosition();
-
-                player.seekToDefaultPosition(i);
+                skipTo(i);
                 promise.resolve(null);
                 return;
             }
@@ -169,10 +463,7 @@ public class ExoPlayback implements EventListener {
             return;
         }
 
-        lastKnownWindow = player.getCurrentWindowIndex();
-        lastKnownPosition = player.getCurrentPosition();
-
-        player.seekToDefaultPosition(prev);
+        skipTo(prev);
         promise.resolve(null);
     }
 
@@ -184,11 +475,58 @@ public class ExoPlayback implements EventListener {
             return;
         }
 
-        lastKnownWindow = player.getCurrentWindowIndex();
+        skipTo(next);
+        promise.resolve(null);
+    }
+
+    private void skipTo(int index) {
+        if(fading && queue.get(index) == standbyTrack) {
+            // The track is already fading in, it keeps playing from where it is
+            finishCrossfade();
+            return;
+        }
+
+        cancelCrossfade();
+
+        lastKnownWindow = getWindowIndex();
         lastKnownPosition = player.getCurrentPosition();
 
-        player.seekToDefaultPosition(next);
-        promise.resolve(null);
+        if(!swapToStandby(index)) player.seekToDefaultPosition(index);
+    }
+
+    /**
+     * Sets the repeat mode
+     * @param mode {@link Player#REPEAT_MODE_OFF}, {@link Player#REPEAT_MODE_ONE} or {@link Player#REPEAT_MODE_ALL}
+     */
+    public void setRepeatMode(int mode) {
+        player.setRepeatMode(mode);
+        if(standby != null) standby.setRepeatMode(mode);
+    }
+
+    public int getRepeatMode() {
+        return player.getRepeatMode();
+    }
+
+    /**
+     * Enables or disables the shuffle mode without touching the queue
+     * @param enabled Whether the queue is shuffled
+     * @param seed The seed of the shuffle order, the same seed always gives the same order
+     */
+    public void setShuffleMode(boolean enabled, long seed) {
+        if(enabled && (!player.getShuffleModeEnabled() || seed != shuffleSeed)) {
+            // The current track starts the new order
+            int current = getCurrentIndex();
+            shuffleSeed = seed;
+
+            source.setShuffleOrder(new SeededShuffleOrder(queue.size(), seed, current));
+        }
+
+        player.setShuffleModeEnabled(enabled);
+        if(standby != null) standby.setShuffleModeEnabled(enabled);
+    }
+
+    public boolean getShuffleMode() {
+        return player.getShuffleModeEnabled();
     }
 
     public void play() {
@@ -196,11 +534,16 @@ public class ExoPlayback implements EventListener {
     }
 
     public void pause() {
+        // A crossfade in progress is finished, the incoming track is paused where it is
+        finishCrossfade();
         player.setPlayWhenReady(false);
+        scheduleCrossfade();
     }
 
     public void stop() {
-        lastKnownWindow = player.getCurrentWindowIndex();
+        cancelCrossfade();
+
+        lastKnownWindow = getWindowIndex();
         lastKnownPosition = player.getCurrentPosition();
 
         player.stop(false);
@@ -208,7 +551,9 @@ public class ExoPlayback implements EventListener {
     }
 
     public void reset() {
-        lastKnownWindow = player.getCurrentWindowIndex();
+        cancelCrossfade();
+
+        lastKnownWindow = getWindowIndex();
         lastKnownPosition = player.getCurrentPosition();
 
         player.stop(true);
@@ -232,18 +577,25 @@ public class ExoPlayback implements EventListener {
     }
 
     public void seekTo(long time) {
-        lastKnownWindow = player.getCurrentWindowIndex();
+        // A crossfade in progress is finished, the seek applies to the incoming track
+        finishCrossfade();
+
+        lastKnownWindow = getWindowIndex();
         lastKnownPosition = player.getCurrentPosition();
 
         player.seekTo(time);
+        scheduleCrossfade();
     }
 
     public float getVolume() {
-        return player.getVolume();
+        return volume;
     }
 
     public void setVolume(float volume) {
-        player.setVolume(volume);
+        this.volume = volume;
+
+        // The next crossfade step will apply it
+        if(!fading) player.setVolume(volume);
     }
 
     public float getRate() {
@@ -269,15 +621,321 @@ public class ExoPlayback implements EventListener {
     }
 
     public void destroy() {
+        if(prewarmMessage != null) prewarmMessage.cancel();
+        for(PlayerMessage message : crossfadeMessages) message.cancel();
         player.release();
+        if(standby != null) standby.release();
+    }
+
+    /**
+     * Gets the queue position of the current track
+     */
+    private int getWindowIndex() {
+        // The incoming player only has its own track until the rest of the queue is added around it
+        return fillTrack != null ? queue.indexOf(fillTrack) : player.getCurrentWindowIndex();
+    }
+
+    /**
+     * Loads the hinted track or the next track in the standby player, where it buffers paused from the start
+     */
+    private void updateStandby() {
+        // The standby player is playing the incoming track during a crossfade
+        if(standby == null || fading || fillTrack != null) return;
+
+        // The timeline might not have caught up with the queue yet
+        Timeline timeline = player.getCurrentTimeline();
+        if(timeline.getWindowCount() != queue.size()) return;
+
+        int index = standbyHint != null ? queue.indexOf(standbyHint) : player.getNextWindowIndex();
+        if(index == C.INDEX_UNSET || index < 0) return;
+
+        // Live streams have no fixed start to buffer from
+        if(timeline.getWindow(index, new Window()).isDynamic) return;
+
+        Track track = queue.get(index);
+
+        if(track == standbyTrack) {
+            if(standby.getCurrentPosition() == 0) return;
+
+            standby.setPlayWhenReady(false);
+            standby.seekToDefaultPosition();
+            return;
+        }
+
+        standbyTrack = track;
+        standbySource = createSource(shuffleSeed);
+        standbySource.addMediaSource(track.toMediaSource(pool));
+
+        standby.setPlayWhenReady(false);
+        standby.prepare(standbySource);
+    }
+
+    /**
+     * Releases the track buffered by the standby player
+     */
+    private void clearStandby() {
+        if(standby != null) standby.stop(true);
+
+        standbySource = null;
+        standbyTrack = null;
+    }
+
+    /**
+     * Makes the standby player take over when it's already buffered at the start of the track
+     * @param index The track index
+     * @return Whether the players have been swapped
+     */
+    private boolean swapToStandby(int index) {
+        if(!isStandbyReady(index) || standby.getPlaybackState() != Player.STATE_READY) return false;
+
+        swapPlayers(Player.DISCONTINUITY_REASON_SEEK);
+        return true;
+    }
+
+    /**
+     * Whether the standby player is positioned at the start of the track
+     */
+    private boolean isStandbyReady(int index) {
+        if(standby == null || standbyTrack == null || standby.getPlaybackState() == Player.STATE_IDLE) return false;
+        if(index < 0 || index >= queue.size() || queue.get(index) != standbyTrack) return false;
+        return standby.getCurrentPosition() == 0;
+    }
+
+    /**
+     * Makes the standby player the current one.
+     *
+     * The standby player only has the incoming track, the rest of the queue is added around it while it plays,
+     * which doesn't interrupt the playing period. The outgoing player is released along with its queue sources,
+     * it buffers the next upcoming track once the queue is complete.
+     */
+    private void swapPlayers(int reason) {
+        SimpleExoPlayer previous = player;
+        ConcatenatingMediaSource playing = standbySource;
+        Track track = standbyTrack;
+        int index = queue.indexOf(track);
+        ShuffleOrder order = copyShuffleOrder(previous.getCurrentTimeline(), index);
+
+        previous.removeListener(this);
+
+        player = standby;
+        source = playing;
+        standby = previous;
+        standbySource = null;
+        standbyTrack = null;
+
+        player.setVolume(volume);
+        player.setPlaybackParameters(standby.getPlaybackParameters());
+        player.setRepeatMode(standby.getRepeatMode());
+        player.setShuffleModeEnabled(standby.getShuffleModeEnabled());
+        player.setPlayWhenReady(standby.getPlayWhenReady());
+        standby.stop(true);
+        standby.setVolume(volume);
+
+        List<MediaSource> before = new ArrayList<>();
+        List<MediaSource> after = new ArrayList<>();
+
+        for(int i = 0; i < queue.size(); i++) {
+            if(i < index) before.add(queue.get(i).toMediaSource(pool));
+            else if(i > index) after.add(queue.get(i).toMediaSource(pool));
+        }
+
+        fillTrack = track;
+        playing.addMediaSources(0, before);
+        playing.addMediaSources(index + 1, after);
+        playing.setShuffleOrder(order, () -> onQueueFilled(playing, reason));
+
+        player.addListener(this);
+
+        // The new player won't notify its state by itself, as it was already in it
+        onPlayerStateChanged(player.getPlayWhenReady(), player.getPlaybackState());
+    }
+
+    /**
+     * Notifies the track change once the incoming player has the whole queue
+     */
+    private void onQueueFilled(ConcatenatingMediaSource playing, int reason) {
+        // The queue was reset or switched in the meantime
+        if(source != playing) return;
+
+        fillTrack = null;
+        onPositionDiscontinuity(reason);
+
+        // The timeline updates were skipped while the queue was being added
+        schedulePrewarm();
+        updateStandby();
+        scheduleCrossfade();
+    }
+
+    /**
+     * Copies the shuffle order of the outgoing player, so the incoming one goes on with the same order
+     * @param timeline The timeline of the outgoing player
+     * @param current The index of the incoming track
+     */
+    private ShuffleOrder copyShuffleOrder(Timeline timeline, int current) {
+        // A new order is started when the timeline hasn't caught up with the queue
+        if(timeline.getWindowCount() != queue.size()) return new SeededShuffleOrder(queue.size(), shuffleSeed, current);
+
+        int[] order = new int[queue.size()];
+        int index = timeline.getFirstWindowIndex(true);
+
+        for(int i = 0; i < order.length; i++) {
+            order[i] = index;
+            index = timeline.getNextWindowIndex(index, Player.REPEAT_MODE_OFF, true);
+        }
+
+        return new SeededShuffleOrder(shuffleSeed, order);
+    }
+
+    /**
+     * Sets the crossfade between tracks, which plays the next track through the standby player
+     * @param crossfade The crossfade or {@code null} to disable it
+     * @return Whether crossfades are available, they need the warm standby mode
+     */
+    public boolean setCrossfade(Crossfade crossfade) {
+        if(crossfade != null && standby == null) return false;
+
+        cancelCrossfade();
+        this.crossfade = crossfade;
+        scheduleCrossfade();
+        return true;
+    }
+
+    /**
+     * Schedules the volume ramps at the end of the current track, on the playback clock
+     */
+    private void scheduleCrossfade() {
+        if(fading) return;
+
+        for(PlayerMessage message : crossfadeMessages) message.cancel();
+        crossfadeMessages.clear();
+
+        if(crossfade == null || standby == null || fillTrack != null) return;
+
+        Timeline timeline = player.getCurrentTimeline();
+        int index = player.getCurrentWindowIndex();
+        if(timeline.isEmpty() || index == C.INDEX_UNSET || index >= timeline.getWindowCount()) return;
+
+        Window window = timeline.getWindow(index, new Window());
+        long duration = window.getDurationMs();
+        if(duration == C.TIME_UNSET || window.isDynamic) return;
+
+        // Ends slightly before the end, so the outgoing player never moves on to the next track by itself
+        long length = Math.min(crossfade.duration, duration / 2);
+        long start = Math.max(duration - length - CROSSFADE_END_MARGIN, 0);
+        int steps = Math.max((int)(length / CROSSFADE_STEP), 1);
+
+        for(int i = 0; i <= steps; i++) {
+            float fraction = (float)i / steps;
+
+            crossfadeMessages.add(player.createMessage((type, payload) -> onCrossfadeStep((Float)payload))
+                    .setPayload(fraction)
+                    .setPosition(index, start + (long)(length * fraction))
+                    .setHandler(handler)
+                    .send());
+        }
+    }
+
+    private void onCrossfadeStep(float fraction) {
+        if(!fading) {
+            // Starts the incoming track, unless the standby player isn't ready for it
+            int index = standbyHint != null ? queue.indexOf(standbyHint) : player.getNextWindowIndex();
+
+            if(!player.getPlayWhenReady() || !isStandbyReady(index)) {
+                for(PlayerMessage message : crossfadeMessages) message.cancel();
+                crossfadeMessages.clear();
+                return;
+            }
+
+            fading = true;
+            standby.setVolume(0);
+            standby.setPlayWhenReady(true);
+        }
+
+        player.setVolume(volume * crossfade.getFadeOut(fraction));
+        standby.setVolume(volume * crossfade.getFadeIn(fraction));
+
+        if(fraction >= 1) finishCrossfade();
+    }
+
+    /**
+     * Finishes a crossfade in progress right away, the incoming track keeps playing from where it is
+     */
+    private void finishCrossfade() {
+        for(PlayerMessage message : crossfadeMessages) message.cancel();
+        crossfadeMessages.clear();
+
+        if(!fading) return;
+        fading = false;
+
+        // The incoming player takes over
+        lastKnownWindow = player.getCurrentWindowIndex();
+        lastKnownPosition = player.getCurrentPosition();
+
+        swapPlayers(Player.DISCONTINUITY_REASON_PERIOD_TRANSITION);
+    }
+
+    /**
+     * Stops a crossfade in progress, going back to the outgoing track at full volume.
+     * Used when moving somewhere else, as the incoming track starts over when it's played again.
+     */
+    private void cancelCrossfade() {
+        for(PlayerMessage message : crossfadeMessages) message.cancel();
+        crossfadeMessages.clear();
+
+        if(!fading) return;
+        fading = false;
+
+        standby.setPlayWhenReady(false);
+        standby.seekToDefaultPosition();
+        standby.setVolume(volume);
+        player.setVolume(volume);
+    }
+
+    /**
+     * Prewarms the connections to the upcoming tracks and indexes them when possible
+     */
+    private void prewarmUpcoming() {
+        List<Track> tracks = getNextTracks(PREWARM_COUNT);
+        pool.prewarm(tracks);
+
+        for(Track track : tracks) pool.index(track);
+    }
+
+    /**
+     * Schedules a prewarm close to the end of the current track
+     */
+    private void schedulePrewarm() {
+        if(prewarmMessage != null) prewarmMessage.cancel();
+        prewarmMessage = null;
+
+        Timeline timeline = player.getCurrentTimeline();
+        int index = player.getCurrentWindowIndex();
+        if(timeline.isEmpty() || index == C.INDEX_UNSET || index >= timeline.getWindowCount()) return;
+
+        long duration = timeline.getWindow(index, new Window()).getDurationMs();
+        if(duration == C.TIME_UNSET) return;
+
+        prewarmMessage = player.createMessage((type, payload) -> prewarmUpcoming())
+                .setPosition(index, Math.max(duration - PREWARM_BEFORE_END, 0))
+                .setHandler(handler)
+                .send();
     }
 
     @Override
     public void onTimelineChanged(Timeline timeline, Object manifest, int reason) {
         Log.d(Utils.LOG, "onTimelineChanged: " + reason);
 
+        // The queue is still being added around the current track
+        if(fillTrack != null) return;
+
         if ((reason == Player.TIMELINE_CHANGE_REASON_PREPARED || reason == Player.TIMELINE_CHANGE_REASON_DYNAMIC) && !timeline.isEmpty()) {
             onPositionDiscontinuity(Player.DISCONTINUITY_REASON_INTERNAL);
+
+            // The queue or the duration might have changed
+            schedulePrewarm();
+            prewarmUpcoming();
+            updateStandby();
+            scheduleCrossfade();
         }
     }
 
@@ -285,6 +943,9 @@ public class ExoPlayback implements EventListener {
     public void onPositionDiscontinuity(int reason) {
         Log.d(Utils.LOG, "onPositionDiscontinuity: " + reason);
 
+        // The track change is notified once the whole queue has been added
+        if(fillTrack != null) return;
+
         if(lastKnownWindow != player.getCurrentWindowIndex()) {
             Track previous = lastKnownWindow == C.INDEX_UNSET ? null : queue.get(lastKnownWindow);
             Track next = getCurrentTrack();
@@ -298,10 +959,20 @@ public class ExoPlayback implements EventListener {
             }
 
             manager.onTrackUpdate(playerId, previous, lastKnownPosition, next);
+
+            if(next != null) pool.index(next);
+            standbyHint = null;
+            cancelCrossfade();
+            schedulePrewarm();
+            prewarmUpcoming();
+            updateStandby();
+            scheduleCrossfade();
         }
 
         lastKnownWindow = player.getCurrentWindowIndex();
         lastKnownPosition = player.getCurrentPosition();
+
+        manager.onPlaybackUpdate(playerId);
     }
 
     @Override
@@ -339,11 +1010,17 @@ public class ExoPlayback implements EventListener {
     @Override
     public void onRepeatModeChanged(int repeatMode) {
         // Repeat mode update
+        manager.onModeUpdate(playerId);
+        updateStandby();
+        scheduleCrossfade();
     }
 
     @Override
     public void onShuffleModeEnabledChanged(boolean shuffleModeEnabled) {
         // Shuffle mode update
+        manager.onModeUpdate(playerId);
+        prewarmUpcoming();
+        updateStandby();
     }
 
     @Override
@@ -354,10 +1031,12 @@ public class ExoPlayback implements EventListener {
     @Override
     public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
         // Speed or pitch changes
+        manager.onPlaybackUpdate(playerId);
     }
 
     @Override
     public void onSeekProcessed() {
         // Finished seeking
+        manager.onPlaybackUpdate(playerId);
     }
 }
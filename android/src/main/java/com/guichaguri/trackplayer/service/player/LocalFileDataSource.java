@@ -0,0 +1,285 @@
+package com.guichaguri.trackplayer.service.player;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads local files, uncompressed assets and raw resources through a file channel,
+ * with positioned reads into a reusable direct buffer. The extractors read a few bytes at a time,
+ * so most of their reads are served from the buffer instead of going through a system call each.
+ *
+ * Assets and resources are read straight from their region in the APK, without going through a stream.
+ * Anything else (content uris, compressed assets, remote files) goes through the fallback source.
+ *
+ * @author Guichaguri
+ */
+public class LocalFileDataSource implements DataSource {
+
+    public static class Factory implements DataSource.Factory {
+
+        private final Context context;
+        private final DataSource.Factory fallback;
+
+        public Factory(Context context, DataSource.Factory fallback) {
+            this.context = context.getApplicationContext();
+            this.fallback = fallback;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new LocalFileDataSource(context, fallback.createDataSource());
+        }
+
+    }
+
+    /**
+     * How much of the file is read ahead at once
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String ASSET_PATH = "/android_asset/";
+
+    private final Context context;
+    private final DataSource fallback;
+    private final List<TransferListener> listeners = new ArrayList<>(1);
+
+    private DataSpec dataSpec;
+    private boolean usingFallback = false;
+
+    private AssetFileDescriptor descriptor;
+    private FileInputStream stream;
+    private FileChannel channel;
+
+    // The region of the file that holds the media, which is only part of the APK for assets and resources
+    private long regionStart;
+    private long regionLength;
+
+    // Kept between opens, as the loaders reuse their data sources. Holds the file data from bufferStart
+    private ByteBuffer buffer;
+    private long bufferStart;
+
+    private long position;
+    private long bytesRemaining;
+
+    public LocalFileDataSource(Context context, DataSource fallback) {
+        this.context = context;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        listeners.add(transferListener);
+        fallback.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        if(!openRegion(dataSpec.uri)) {
+            closeRegion();
+            usingFallback = true;
+            return fallback.open(dataSpec);
+        }
+
+        this.dataSpec = dataSpec;
+        for(TransferListener listener : listeners) listener.onTransferInitializing(this, dataSpec, false);
+
+        if(dataSpec.position > regionLength) throw new EOFException();
+
+        if(buffer == null) buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.limit(0);
+        bufferStart = 0;
+
+        position = dataSpec.position;
+        bytesRemaining = dataSpec.length != C.LENGTH_UNSET ? dataSpec.length : regionLength - position;
+
+        for(TransferListener listener : listeners) listener.onTransferStart(this, dataSpec, false);
+
+        return bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int readLength) throws IOException {
+        if(usingFallback) return fallback.read(target, offset, readLength);
+
+        if(readLength == 0) return 0;
+        if(bytesRemaining == 0 || position >= regionLength) return C.RESULT_END_OF_INPUT;
+
+        if(position < bufferStart || position >= bufferStart + buffer.limit()) fill();
+
+        int bufferOffset = (int)(position - bufferStart);
+        int length = (int)Math.min(Math.min(readLength, bytesRemaining), buffer.limit() - bufferOffset);
+
+        buffer.position(bufferOffset);
+        buffer.get(target, offset, length);
+
+        position += length;
+        bytesRemaining -= length;
+
+        for(TransferListener listener : listeners) listener.onBytesTransferred(this, dataSpec, false, length);
+
+        return length;
+    }
+
+    @Override
+    public Uri getUri() {
+        if(usingFallback) return fallback.getUri();
+        return dataSpec != null ? dataSpec.uri : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        if(usingFallback) return fallback.getResponseHeaders();
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(usingFallback) {
+            usingFallback = false;
+            fallback.close();
+            return;
+        }
+
+        closeRegion();
+
+        if(dataSpec != null) {
+            for(TransferListener listener : listeners) listener.onTransferEnd(this, dataSpec, false);
+            dataSpec = null;
+        }
+    }
+
+    /**
+     * Reads the file into the buffer, starting at the current position
+     */
+    private void fill() throws IOException {
+        buffer.clear();
+        buffer.limit((int)Math.min(BUFFER_SIZE, regionLength - position));
+        bufferStart = position;
+
+        while(buffer.hasRemaining()) {
+            // The file was truncated while it was open
+            if(channel.read(buffer, regionStart + position + buffer.position()) == -1) throw new EOFException();
+        }
+
+        buffer.flip();
+    }
+
+    /**
+     * Opens the region of the file holding the uri data
+     * @return Whether the uri can be read through a file channel
+     */
+    private boolean openRegion(Uri uri) throws IOException {
+        String scheme = uri.getScheme();
+
+        if(scheme == null || scheme.equals(ContentResolver.SCHEME_FILE)) {
+            String path = uri.getPath();
+            if(path == null) return false;
+
+            if(path.startsWith(ASSET_PATH)) {
+                return openAsset(path.substring(ASSET_PATH.length()));
+            }
+
+            stream = new FileInputStream(path);
+            channel = stream.getChannel();
+            regionStart = 0;
+            regionLength = channel.size();
+            return true;
+
+        } else if(scheme.equals("asset")) {
+
+            String path = uri.getPath();
+            return path != null && openAsset(path.startsWith("/") ? path.substring(1) : path);
+
+        } else if(scheme.equals(ContentResolver.SCHEME_ANDROID_RESOURCE)) {
+
+            int id = getResourceId(uri);
+            if(id == 0) return false;
+
+            try {
+                // Returns null when the resource is compressed
+                return openDescriptor(context.getResources().openRawResourceFd(id));
+            } catch(Resources.NotFoundException ex) {
+                return false;
+            }
+
+        }
+
+        return false;
+    }
+
+    private boolean openAsset(String path) throws IOException {
+        try {
+            return openDescriptor(context.getAssets().openFd(path));
+        } catch(FileNotFoundException ex) {
+            // The asset is compressed, it has to be streamed
+            return false;
+        }
+    }
+
+    private boolean openDescriptor(AssetFileDescriptor descriptor) throws IOException {
+        if(descriptor == null) return false;
+
+        this.descriptor = descriptor;
+        stream = descriptor.createInputStream();
+        channel = stream.getChannel();
+
+        regionStart = descriptor.getStartOffset();
+        regionLength = descriptor.getLength();
+
+        if(regionLength == AssetFileDescriptor.UNKNOWN_LENGTH) {
+            regionLength = channel.size() - regionStart;
+        }
+        return true;
+    }
+
+    private int getResourceId(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+
+        if(segments.size() == 1) {
+            // android.resource://package/id
+            try {
+                return Integer.parseInt(segments.get(0));
+            } catch(NumberFormatException ex) {
+                return 0;
+            }
+        } else if(segments.size() == 2) {
+            // android.resource://package/type/name
+            return context.getResources().getIdentifier(segments.get(1), segments.get(0), uri.getAuthority());
+        }
+
+        return 0;
+    }
+
+    private void closeRegion() {
+        channel = null;
+
+        Util.closeQuietly(stream);
+        stream = null;
+
+        if(descriptor != null) {
+            try {
+                descriptor.close();
+            } catch(IOException ignored) {}
+            descriptor = null;
+        }
+    }
+
+}
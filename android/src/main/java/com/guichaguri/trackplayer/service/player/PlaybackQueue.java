@@ -0,0 +1,47 @@
+package com.guichaguri.trackplayer.service.player;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A named queue which is not playing, kept with its media source tree and its resume position.
+ * The source objects are kept but released, switching back prepares them again.
+ *
+ * Only the two most recently used idle queues keep their sources, the others are dropped to bound the memory,
+ * leaving only the tracks, from which the sources are rebuilt when the queue is switched back to.
+ *
+ * @author Guichaguri
+ */
+public class PlaybackQueue {
+
+    public static final String DEFAULT = "default";
+
+    public final List<Track> tracks;
+    public final Map<Long, Track> queueIds;
+    public final QueueIndex index;
+    public final long shuffleSeed;
+
+    // The source tree, or null when it has been dropped
+    public ConcatenatingMediaSource source;
+
+    // Where the queue resumes from
+    public int window = C.INDEX_UNSET;
+    public long position = C.TIME_UNSET;
+
+    public PlaybackQueue(List<Track> tracks, Map<Long, Track> queueIds, QueueIndex index, long shuffleSeed,
+                         ConcatenatingMediaSource source) {
+        this.tracks = tracks;
+        this.queueIds = queueIds;
+        this.index = index;
+        this.shuffleSeed = shuffleSeed;
+        this.source = source;
+    }
+
+    public boolean hasSources() {
+        return source != null;
+    }
+
+}
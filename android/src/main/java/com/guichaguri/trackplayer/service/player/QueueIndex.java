@@ -0,0 +1,214 @@
+package com.guichaguri.trackplayer.service.player;
+
+import com.guichaguri.trackplayer.service.models.Track;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * A token index over the title, artist and album of the tracks in a queue.
+ *
+ * The fields are split into words, stripped of their accents and lowercased. Every query word
+ * matches the words that start with it, so the results narrow down while the user is typing.
+ * The index is updated along with the queue instead of being rebuilt on each search.
+ *
+ * The queue positions are also kept, so a search only goes through the matching tracks.
+ * Appending and removing from the end keep them up to date, other changes shift the positions,
+ * which are then rebuilt on the next search.
+ *
+ * @author Guichaguri
+ */
+public class QueueIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{Mn}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Token -> queue ids, sorted so the tokens sharing a prefix are contiguous
+    private final TreeMap<String, Set<Long>> tokens = new TreeMap<>();
+
+    // Queue id -> tokens, to remove or update a track without knowing its previous metadata
+    private final Map<Long, String[]> tracks = new HashMap<>();
+
+    // Queue id -> position in the queue, only valid when positionsValid is set
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private boolean positionsValid = true;
+
+    /**
+     * Indexes a track that was inserted in the queue
+     * @param position The position it was inserted at
+     */
+    public void add(Track track, int position) {
+        if(positionsValid && position == tracks.size()) {
+            positions.put(track.queueId, position);
+        } else {
+            // The following tracks were shifted
+            positionsValid = false;
+        }
+
+        addTokens(track);
+    }
+
+    /**
+     * Removes a track that was removed from the queue
+     */
+    public void remove(Track track) {
+        Integer position = positions.remove(track.queueId);
+
+        if(position == null || position != tracks.size() - 1) {
+            // The following tracks were shifted
+            positionsValid = false;
+        }
+
+        removeTokens(track);
+    }
+
+    /**
+     * Indexes the track again after its metadata has changed
+     */
+    public void update(Track track) {
+        if(!tracks.containsKey(track.queueId)) return;
+
+        removeTokens(track);
+        addTokens(track);
+    }
+
+    public void clear() {
+        tokens.clear();
+        tracks.clear();
+        positions.clear();
+        positionsValid = true;
+    }
+
+    private void addTokens(Track track) {
+        String[] words = tokenize(track.title, track.artist, track.album);
+        tracks.put(track.queueId, words);
+
+        for(String word : words) {
+            Set<Long> ids = tokens.get(word);
+
+            if(ids == null) {
+                ids = new HashSet<>();
+                tokens.put(word, ids);
+            }
+
+            ids.add(track.queueId);
+        }
+    }
+
+    private void removeTokens(Track track) {
+        String[] words = tracks.remove(track.queueId);
+        if(words == null) return;
+
+        for(String word : words) {
+            Set<Long> ids = tokens.get(word);
+            if(ids == null) continue;
+
+            ids.remove(track.queueId);
+            if(ids.isEmpty()) tokens.remove(word);
+        }
+    }
+
+    /**
+     * Searches the queue, returning the matches in the queue order
+     * @param query The words to search for
+     * @param queue The tracks of the queue, used to rebuild the positions when they're outdated
+     * @param offset How many matches to skip
+     * @param limit The maximum amount of positions to return
+     * @param results The list the positions of the matches are added to
+     * @return The total amount of matches
+     */
+    public int search(String query, List<Track> queue, int offset, int limit, List<Integer> results) {
+        String[] words = tokenize(query);
+        if(words.length == 0) return 0;
+
+        // Looks up the longest word, which is usually the most selective one
+        String longest = words[0];
+        for(String word : words) {
+            if(word.length() > longest.length()) longest = word;
+        }
+
+        SortedMap<String, Set<Long>> prefixed = prefixed(longest);
+        if(prefixed.isEmpty()) return 0;
+
+        if(!positionsValid) rebuildPositions(queue);
+
+        Set<Long> candidates = new HashSet<>();
+        for(Set<Long> ids : prefixed.values()) candidates.addAll(ids);
+
+        // The remaining words are checked against the tokens of each candidate
+        int[] matches = new int[candidates.size()];
+        int total = 0;
+
+        for(long id : candidates) {
+            Integer position = positions.get(id);
+            if(position != null && matches(tracks.get(id), words)) matches[total++] = position;
+        }
+
+        Arrays.sort(matches, 0, total);
+
+        for(int i = offset; i < total && results.size() < limit; i++) {
+            results.add(matches[i]);
+        }
+
+        return total;
+    }
+
+    private void rebuildPositions(List<Track> queue) {
+        positions.clear();
+
+        for(int i = 0; i < queue.size(); i++) {
+            positions.put(queue.get(i).queueId, i);
+        }
+
+        positionsValid = true;
+    }
+
+    private SortedMap<String, Set<Long>> prefixed(String prefix) {
+        return tokens.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private static boolean matches(String[] tokens, String[] words) {
+        if(tokens == null) return false;
+
+        for(String word : words) {
+            boolean found = false;
+
+            for(String token : tokens) {
+                if(token.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if(!found) return false;
+        }
+
+        return true;
+    }
+
+    private static String[] tokenize(String... fields) {
+        Set<String> words = new HashSet<>();
+
+        for(String field : fields) {
+            if(field == null) continue;
+
+            String normalized = Normalizer.normalize(field, Normalizer.Form.NFD);
+            normalized = MARKS.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+
+            for(String word : SEPARATORS.split(normalized)) {
+                if(!word.isEmpty()) words.add(word);
+            }
+        }
+
+        return words.toArray(new String[0]);
+    }
+
+}
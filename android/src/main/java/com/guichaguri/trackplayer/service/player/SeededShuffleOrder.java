@@ -0,0 +1,165 @@
+package com.guichaguri.trackplayer.service.player;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.ShuffleOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A shuffle order generated from a seed, so the same seed always gives the same order.
+ *
+ * The track that is playing when shuffling starts is placed first, so no track is skipped in that pass.
+ * Inserted tracks are spread through random positions and removed tracks are taken out,
+ * without reshuffling the rest of the order. Neighbours are looked up in constant time.
+ *
+ * Every update derives its randomness from the seed and the update count instead of a shared generator,
+ * so two sources going through the same updates keep the same order.
+ *
+ * @author Guichaguri
+ */
+public class SeededShuffleOrder implements ShuffleOrder {
+
+    private final long seed;
+    private final int updates;
+
+    // Shuffled position -> index, and index -> shuffled position
+    private final int[] shuffled;
+    private final int[] positions;
+
+    /**
+     * @param length The amount of tracks
+     * @param seed The seed
+     * @param firstIndex The index placed first in the order or {@link C#INDEX_UNSET}
+     */
+    public SeededShuffleOrder(int length, long seed, int firstIndex) {
+        this(seed, 0, createShuffled(length, new Random(seed), firstIndex));
+    }
+
+    /**
+     * @param seed The seed used by the following updates
+     * @param shuffled The indexes in the shuffled order
+     */
+    public SeededShuffleOrder(long seed, int[] shuffled) {
+        this(seed, 0, shuffled);
+    }
+
+    private SeededShuffleOrder(long seed, int updates, int[] shuffled) {
+        this.seed = seed;
+        this.updates = updates;
+        this.shuffled = shuffled;
+        this.positions = new int[shuffled.length];
+
+        for(int i = 0; i < shuffled.length; i++) {
+            positions[shuffled[i]] = i;
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public int getLength() {
+        return shuffled.length;
+    }
+
+    @Override
+    public int getNextIndex(int index) {
+        int position = positions[index] + 1;
+        return position < shuffled.length ? shuffled[position] : C.INDEX_UNSET;
+    }
+
+    @Override
+    public int getPreviousIndex(int index) {
+        int position = positions[index] - 1;
+        return position >= 0 ? shuffled[position] : C.INDEX_UNSET;
+    }
+
+    @Override
+    public int getLastIndex() {
+        return shuffled.length > 0 ? shuffled[shuffled.length - 1] : C.INDEX_UNSET;
+    }
+
+    @Override
+    public int getFirstIndex() {
+        return shuffled.length > 0 ? shuffled[0] : C.INDEX_UNSET;
+    }
+
+    @Override
+    public ShuffleOrder cloneAndInsert(int insertionIndex, int insertionCount) {
+        Random random = new Random(seed + updates + 1);
+
+        // Picks where the new tracks go and in which order
+        int[] points = new int[insertionCount];
+        int[] values = new int[insertionCount];
+
+        for(int i = 0; i < insertionCount; i++) {
+            points[i] = random.nextInt(shuffled.length + 1);
+
+            int swap = random.nextInt(i + 1);
+            values[i] = values[swap];
+            values[swap] = insertionIndex + i;
+        }
+
+        Arrays.sort(points);
+
+        int[] order = new int[shuffled.length + insertionCount];
+        int old = 0, inserted = 0;
+
+        for(int i = 0; i < order.length; i++) {
+            if(inserted < insertionCount && old == points[inserted]) {
+                order[i] = values[inserted++];
+            } else {
+                int index = shuffled[old++];
+                order[i] = index >= insertionIndex ? index + insertionCount : index;
+            }
+        }
+
+        return new SeededShuffleOrder(seed, updates + 1, order);
+    }
+
+    @Override
+    public ShuffleOrder cloneAndRemove(int indexFrom, int indexToExclusive) {
+        int count = indexToExclusive - indexFrom;
+        int[] order = new int[shuffled.length - count];
+        int position = 0;
+
+        for(int index : shuffled) {
+            if(index >= indexFrom && index < indexToExclusive) continue;
+            order[position++] = index >= indexToExclusive ? index - count : index;
+        }
+
+        return new SeededShuffleOrder(seed, updates + 1, order);
+    }
+
+    @Override
+    public ShuffleOrder cloneAndClear() {
+        return new SeededShuffleOrder(seed, updates + 1, new int[0]);
+    }
+
+    private static int[] createShuffled(int length, Random random, int firstIndex) {
+        int[] order = new int[length];
+        for(int i = 0; i < length; i++) order[i] = i;
+
+        // Fisher-Yates
+        for(int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+
+        if(firstIndex >= 0 && firstIndex < length) {
+            for(int i = 0; i < length; i++) {
+                if(order[i] == firstIndex) {
+                    order[i] = order[0];
+                    order[0] = firstIndex;
+                    break;
+                }
+            }
+        }
+
+        return order;
+    }
+
+}
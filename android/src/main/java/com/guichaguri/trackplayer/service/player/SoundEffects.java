@@ -0,0 +1,412 @@
+package com.guichaguri.trackplayer.service.player;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+import android.util.SparseArray;
+import com.facebook.react.bridge.Promise;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+import com.guichaguri.trackplayer.service.Utils;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A low latency player for short sounds, such as UI and game sounds.
+ *
+ * Sounds are decoded once into PCM by a {@link SoundPool} and played from memory, overlapping each other.
+ * Only a limited amount of sounds is kept loaded, the least recently played ones are unloaded first.
+ * The total size is bounded too, measured on the files as the decoded size isn't known,
+ * so the decoded samples usually take several times that size.
+ *
+ * @author Guichaguri
+ */
+public class SoundEffects implements SoundPool.OnLoadCompleteListener {
+
+    private static final int MAX_STREAMS = 8;
+    private static final int MAX_SOUNDS = 32;
+    private static final long MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final float DUCK_VOLUME = 0.2F;
+    private static final String ASSET_PATH = "/android_asset/";
+
+    private final Context context;
+    private final DataSourcePool pool;
+    private final SoundPool soundPool;
+    private final Handler handler = new Handler();
+
+    // Sound id -> sample id, in access order
+    private final Map<String, Integer> sounds = new LinkedHashMap<>(16, 0.75F, true);
+
+    // Sample id -> promise, for the samples that are still being decoded
+    private final SparseArray<Promise> loading = new SparseArray<>();
+
+    // Sample id -> temporary copy of a remote file, deleted once the sample is decoded or unloaded
+    private final SparseArray<File> copies = new SparseArray<>();
+
+    // Sound id -> token of the copy in progress, a copy is dropped if it's no longer the latest one
+    private final Map<String, Object> copying = new HashMap<>();
+
+    // Sample id -> file size
+    private final SparseArray<Long> sizes = new SparseArray<>();
+    private long size = 0;
+
+    private ExecutorService executor;
+    private float volume = 1;
+    private boolean destroyed = false;
+
+    public SoundEffects(Context context, DataSourcePool pool, AudioAttributes attributes) {
+        this.context = context.getApplicationContext();
+        this.pool = pool;
+
+        if(Build.VERSION.SDK_INT >= 21) {
+            soundPool = new SoundPool.Builder()
+                    .setMaxStreams(MAX_STREAMS)
+                    .setAudioAttributes(attributes)
+                    .build();
+        } else {
+            //noinspection deprecation
+            soundPool = new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+        }
+
+        soundPool.setOnLoadCompleteListener(this);
+    }
+
+    /**
+     * Loads and decodes a sound, replacing the previous sound with the same id
+     * @param id The sound id
+     * @param uri The file, which is copied to a temporary file first when it's not local
+     * @param promise Resolved when the sound is ready to play
+     */
+    public void load(String id, Uri uri, Promise promise) {
+        if(uri == null) {
+            promise.reject("invalid_sound_object", "Sound is missing an url");
+            return;
+        }
+
+        int sample = loadLocal(uri);
+
+        if(sample != -1) {
+            copying.remove(id);
+            register(id, sample, promise);
+            return;
+        }
+
+        // Remote files, content uris and compressed assets can't be read directly by the SoundPool
+        if(executor == null) executor = Executors.newSingleThreadExecutor();
+
+        Object token = new Object();
+        copying.put(id, token);
+
+        executor.execute(() -> {
+            File file = copy(uri);
+
+            handler.post(() -> {
+                if(destroyed || copying.get(id) != token) {
+                    // Unloaded or replaced while it was being copied
+                    if(file != null) file.delete();
+                    if(!destroyed) promise.reject("sound_load_failed", "The sound has been unloaded");
+                    return;
+                }
+
+                copying.remove(id);
+
+                if(file == null) {
+                    promise.reject("sound_load_failed", "Couldn't load " + uri);
+                    return;
+                }
+
+                // The SoundPool opens the file right away, so it can be deleted once decoded or unloaded
+                long length = file.length();
+                int copySample = soundPool.load(file.getPath(), 1);
+
+                if(copySample > 0) {
+                    copies.put(copySample, file);
+                    sizes.put(copySample, length);
+                } else {
+                    file.delete();
+                }
+
+                register(id, copySample, promise);
+            });
+        });
+    }
+
+    /**
+     * Plays a loaded sound
+     * @param promise Resolved with the stream id, which can be used to stop it
+     */
+    public void play(String id, float volume, float rate, boolean loop, Promise promise) {
+        Integer sample = sounds.get(id);
+
+        if(sample == null) {
+            promise.reject("sound_not_loaded", "Given sound ID was not loaded");
+            return;
+        }
+
+        float v = volume * this.volume;
+        float r = Math.max(0.5F, Math.min(2F, rate));
+        int stream = soundPool.play(sample, v, v, 1, loop ? -1 : 0, r);
+
+        if(stream == 0) {
+            promise.reject("sound_play_failed", "The sound is still loading or there's no stream available");
+        } else {
+            promise.resolve(stream);
+        }
+    }
+
+    public void stop(int stream) {
+        soundPool.stop(stream);
+    }
+
+    public void unload(String id) {
+        copying.remove(id);
+
+        Integer sample = sounds.remove(id);
+        if(sample != null) unloadSample(sample);
+    }
+
+    /**
+     * Pauses all playing sounds, called when the audio focus is lost
+     */
+    public void pause() {
+        soundPool.autoPause();
+    }
+
+    /**
+     * Resumes the sounds paused by {@link #pause()}
+     */
+    public void resume() {
+        soundPool.autoResume();
+    }
+
+    /**
+     * Lowers the volume of the sounds played from now on
+     */
+    public void setDucking(boolean ducking) {
+        volume = ducking ? DUCK_VOLUME : 1;
+    }
+
+    public void destroy() {
+        destroyed = true;
+
+        if(executor != null) executor.shutdownNow();
+        executor = null;
+
+        for(int i = 0; i < loading.size(); i++) {
+            loading.valueAt(i).reject("sound_load_failed", "The player has been destroyed");
+        }
+        for(int i = 0; i < copies.size(); i++) {
+            copies.valueAt(i).delete();
+        }
+
+        loading.clear();
+        copies.clear();
+        copying.clear();
+        sizes.clear();
+        sounds.clear();
+        soundPool.release();
+    }
+
+    @Override
+    public void onLoadComplete(SoundPool soundPool, int sample, int status) {
+        deleteCopy(sample);
+
+        Promise promise = loading.get(sample);
+        if(promise == null) return;
+
+        loading.remove(sample);
+
+        if(status == 0) {
+            promise.resolve(null);
+            return;
+        }
+
+        // Removes the sound that failed to decode
+        Iterator<Integer> it = sounds.values().iterator();
+
+        while(it.hasNext()) {
+            if(it.next() == sample) {
+                it.remove();
+                break;
+            }
+        }
+
+        unloadSample(sample);
+        promise.reject("sound_load_failed", "Couldn't decode the sound");
+    }
+
+    private void register(String id, int sample, Promise promise) {
+        if(sample <= 0) {
+            promise.reject("sound_load_failed", "Couldn't load the sound");
+            return;
+        }
+
+        Integer previous = sounds.put(id, sample);
+        if(previous != null) unloadSample(previous);
+
+        Long length = sizes.get(sample);
+        if(length != null) size += length;
+
+        // Keeps the memory bounded, unloading the least recently played sounds, but never the new one
+        Iterator<Integer> it = sounds.values().iterator();
+
+        while((sounds.size() > MAX_SOUNDS || size > MAX_SIZE) && sounds.size() > 1 && it.hasNext()) {
+            int eldest = it.next();
+            it.remove();
+            unloadSample(eldest);
+        }
+
+        loading.put(sample, promise);
+    }
+
+    private void unloadSample(int sample) {
+        Promise promise = loading.get(sample);
+
+        if(promise != null) {
+            loading.remove(sample);
+            promise.reject("sound_load_failed", "The sound has been unloaded");
+        }
+
+        Long length = sizes.get(sample);
+
+        if(length != null) {
+            sizes.remove(sample);
+            size -= length;
+        }
+
+        // The copy of a sound still being decoded is deleted here, as its load will never complete
+        deleteCopy(sample);
+        soundPool.unload(sample);
+    }
+
+    private void deleteCopy(int sample) {
+        File copy = copies.get(sample);
+
+        if(copy != null) {
+            copies.remove(sample);
+            copy.delete();
+        }
+    }
+
+    /**
+     * Loads a file the SoundPool can read by itself
+     * @return The sample id or {@code -1} if it has to be copied first
+     */
+    private int loadLocal(Uri uri) {
+        String scheme = uri.getScheme();
+
+        try {
+            if(scheme == null || scheme.equals(ContentResolver.SCHEME_FILE)) {
+                String path = uri.getPath();
+                if(path == null) return -1;
+
+                if(path.startsWith(ASSET_PATH)) {
+                    // The SoundPool duplicates the descriptor, so it can be closed right away
+                    AssetFileDescriptor descriptor = context.getAssets().openFd(path.substring(ASSET_PATH.length()));
+                    return loadDescriptor(descriptor);
+                }
+
+                int sample = soundPool.load(path, 1);
+                if(sample > 0) sizes.put(sample, new File(path).length());
+                return sample;
+
+            } else if(scheme.equals(ContentResolver.SCHEME_ANDROID_RESOURCE)) {
+
+                List<String> segments = uri.getPathSegments();
+                int id = 0;
+
+                if(segments.size() == 1) {
+                    id = Integer.parseInt(segments.get(0));
+                } else if(segments.size() == 2) {
+                    id = context.getResources().getIdentifier(segments.get(1), segments.get(0), uri.getAuthority());
+                }
+
+                if(id == 0) return -1;
+
+                // Returns null when the resource is compressed
+                AssetFileDescriptor descriptor = context.getResources().openRawResourceFd(id);
+                if(descriptor == null) return -1;
+
+                return loadDescriptor(descriptor);
+
+            }
+        } catch(FileNotFoundException | NumberFormatException | Resources.NotFoundException ex) {
+            // The asset is compressed or the uri is not a valid resource
+        } catch(IOException ex) {
+            Log.w(Utils.LOG, "Couldn't open the sound " + uri, ex);
+        }
+
+        return -1;
+    }
+
+    private int loadDescriptor(AssetFileDescriptor descriptor) throws IOException {
+        int sample = soundPool.load(descriptor, 1);
+        if(sample > 0) sizes.put(sample, Math.max(descriptor.getLength(), 0));
+
+        descriptor.close();
+        return sample;
+    }
+
+    /**
+     * Copies a file to a temporary file through the shared data sources. Runs in the background thread.
+     * @return The copy or {@code null} if it failed
+     */
+    private File copy(Uri uri) {
+        DataSource source = pool.createDataSource(uri);
+        InputStream in = null;
+        OutputStream out = null;
+        File file = null;
+
+        try {
+            file = File.createTempFile("sound", null, context.getCacheDir());
+
+            in = new DataSourceInputStream(source, new DataSpec(uri));
+            out = new FileOutputStream(file);
+
+            byte[] buffer = new byte[16 * 1024];
+            long length = 0;
+            int read;
+
+            while((read = in.read(buffer)) != -1) {
+                length += read;
+                if(length > MAX_SIZE) throw new IOException("The sound is larger than " + MAX_SIZE + " bytes");
+
+                out.write(buffer, 0, read);
+            }
+
+            out.close();
+            out = null;
+            return file;
+        } catch(IOException ex) {
+            Log.w(Utils.LOG, "Couldn't copy the sound " + uri, ex);
+            if(file != null) file.delete();
+            return null;
+        } finally {
+            Util.closeQuietly(in);
+            Util.closeQuietly(out);
+        }
+    }
+
+}
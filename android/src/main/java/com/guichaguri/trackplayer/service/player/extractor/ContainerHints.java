@@ -0,0 +1,51 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps the content type hints of the tracks to the extractor of their container
+ *
+ * @author Guichaguri
+ */
+public class ContainerHints {
+
+    private static final Map<String, Class<? extends Extractor>> extractors = new HashMap<>();
+
+    static {
+        put(Mp3Extractor.class, "mp3", "audio/mpeg", "audio/mp3");
+        put(AdtsExtractor.class, "aac", "adts", "audio/aac", "audio/aacp", "audio/x-aac");
+        put(Mp4Extractor.class, "m4a", "mp4", "m4b", "audio/mp4", "audio/x-m4a", "audio/m4a");
+        put(OggExtractor.class, "ogg", "oga", "opus", "audio/ogg", "audio/opus");
+        put(WavExtractor.class, "wav", "audio/wav", "audio/x-wav", "audio/wave");
+
+        // FLAC is only available through the FLAC extension, which is loaded by the default extractors
+    }
+
+    private static void put(Class<? extends Extractor> extractor, String... hints) {
+        for(String hint : hints) extractors.put(hint, extractor);
+    }
+
+    /**
+     * Gets the extractor for a content type or container name
+     * @param hint The content type hint, such as "mp3" or "audio/mpeg"
+     * @return The extractor class or {@code null} if the hint is unknown
+     */
+    public static Class<? extends Extractor> get(String hint) {
+        if(hint == null) return null;
+
+        // Ignores parameters such as "audio/mpeg; charset=..."
+        int separator = hint.indexOf(';');
+        if(separator >= 0) hint = hint.substring(0, separator);
+
+        return extractors.get(hint.trim().toLowerCase(Locale.US));
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.IOException;
+
+/**
+ * An MP3 extractor which seeks through a {@link SeekIndex} when there is one for the url.
+ *
+ * The MP3 extractor computes the timestamps after a seek from its own seeker, which is an estimate
+ * for VBR files without a seek table. The timestamps are therefore rebased to the time of the index entry.
+ *
+ * @author Guichaguri
+ */
+public class IndexedMp3Extractor implements Extractor {
+
+    private final Mp3Extractor extractor = new Mp3Extractor();
+    private final SeekIndexStore store;
+    private final String url;
+
+    private SeekIndex index;
+    private boolean loaded = false;
+
+    // The time of the index entry the extractor has seeked to, until the first sample is read
+    private long seekTimeUs = C.TIME_UNSET;
+    private long offsetUs = 0;
+
+    public IndexedMp3Extractor(SeekIndexStore store, String url) {
+        this.store = store;
+        this.url = url;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+        return extractor.sniff(input);
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+        extractor.init(new IndexedOutput(output));
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException, InterruptedException {
+        if(!loaded) {
+            // Loaded in the loader thread once the file length is known, so an outdated index is discarded
+            index = store.get(url, input.getLength(), SeekIndexStore.getLastModified(url));
+            loaded = true;
+        }
+
+        return extractor.read(input, seekPosition);
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {
+        extractor.seek(position, timeUs);
+
+        if(index == null) return;
+
+        long indexTimeUs = index.getTimeUs(position);
+        seekTimeUs = indexTimeUs != -1 ? indexTimeUs : C.TIME_UNSET;
+        offsetUs = 0;
+    }
+
+    @Override
+    public void release() {
+        extractor.release();
+    }
+
+    private class IndexedOutput implements ExtractorOutput {
+
+        private final ExtractorOutput output;
+
+        private IndexedOutput(ExtractorOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public TrackOutput track(int id, int type) {
+            return new IndexedTrackOutput(output.track(id, type));
+        }
+
+        @Override
+        public void endTracks() {
+            output.endTracks();
+        }
+
+        @Override
+        public void seekMap(SeekMap seekMap) {
+            // Replaces the estimated seek map by the index
+            output.seekMap(index != null ? index : seekMap);
+        }
+
+    }
+
+    private class IndexedTrackOutput implements TrackOutput {
+
+        private final TrackOutput output;
+
+        private IndexedTrackOutput(TrackOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public void format(Format format) {
+            output.format(format);
+        }
+
+        @Override
+        public int sampleData(ExtractorInput input, int length, boolean allowEndOfInput) throws IOException, InterruptedException {
+            return output.sampleData(input, length, allowEndOfInput);
+        }
+
+        @Override
+        public void sampleData(ParsableByteArray data, int length) {
+            output.sampleData(data, length);
+        }
+
+        @Override
+        public void sampleMetadata(long timeUs, int flags, int size, int offset, CryptoData cryptoData) {
+            if(seekTimeUs != C.TIME_UNSET) {
+                // The first sample after a seek starts exactly at the index entry
+                offsetUs = seekTimeUs - timeUs;
+                seekTimeUs = C.TIME_UNSET;
+            }
+
+            output.sampleMetadata(timeUs + offsetUs, flags, size, offset, cryptoData);
+        }
+
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.MpegAudioHeader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Builds a seek index of an MP3 file by walking through all of its frame headers.
+ * Only the 4 byte headers are parsed, the audio data itself is skipped.
+ *
+ * @author Guichaguri
+ */
+public class Mp3Indexer {
+
+    /**
+     * The time between two entries of the index
+     */
+    private static final long INTERVAL_US = 1000000;
+
+    /**
+     * How many bytes can be skipped looking for the next frame before giving up
+     */
+    private static final int MAX_SYNC_BYTES = 128 * 1024;
+
+    private static final int MPEG_VERSION_1 = 3;
+
+    private final InputStream in;
+    private final long contentLength;
+    private final long lastModified;
+    private final byte[] buffer = new byte[36 + 4];
+    private long position = 0;
+
+    private Mp3Indexer(InputStream in, long contentLength, long lastModified) {
+        this.in = in;
+        this.contentLength = contentLength;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Indexes a stream, which should be buffered
+     * @param in The stream from the start of the file
+     * @param contentLength The file length or {@link C#LENGTH_UNSET}, stored in the index
+     * @param lastModified The file modification time, stored in the index
+     * @return The index
+     */
+    public static SeekIndex index(InputStream in, long contentLength, long lastModified) throws IOException {
+        return new Mp3Indexer(in, contentLength, lastModified).index();
+    }
+
+    private SeekIndex index() throws IOException {
+        skipId3();
+
+        MpegAudioHeader header = new MpegAudioHeader();
+        LongArray times = new LongArray();
+        LongArray positions = new LongArray();
+
+        // The time is derived from the sample count, adding up rounded frame durations would drift.
+        // The count restarts from the current time if the sample rate changes
+        long timeUs = 0;
+        long baseUs = 0;
+        long samples = 0;
+        int sampleRate = 0;
+
+        long nextEntryUs = 0;
+        boolean first = true;
+
+        while(readFully(buffer, 0, 4)) {
+            int data = ((buffer[0] & 0xFF) << 24) | ((buffer[1] & 0xFF) << 16) | ((buffer[2] & 0xFF) << 8) | (buffer[3] & 0xFF);
+            int skipped = 0;
+
+            // Looks for the next frame one byte at a time when the sync is lost
+            while(MpegAudioHeader.getFrameSize(data) == C.LENGTH_UNSET || !MpegAudioHeader.populateHeader(data, header)) {
+                int b = skipped++ < MAX_SYNC_BYTES ? in.read() : -1;
+                if(b == -1) return createIndex(timeUs, times, positions);
+
+                data = (data << 8) | b;
+                position++;
+            }
+
+            int frameSize = header.frameSize;
+            long framePosition = position - 4;
+
+            boolean consumed = false;
+
+            // The first frame might be a Xing, Info or VBRI frame without audio
+            if(first) {
+                first = false;
+                if(isInfoFrame(header, frameSize)) continue;
+                consumed = true;
+            }
+
+            if(header.sampleRate != sampleRate) {
+                baseUs = timeUs;
+                samples = 0;
+                sampleRate = header.sampleRate;
+            }
+
+            if(timeUs >= nextEntryUs) {
+                times.add(timeUs);
+                positions.add(framePosition);
+                nextEntryUs = timeUs + INTERVAL_US;
+            }
+
+            samples += header.samplesPerFrame;
+            timeUs = baseUs + samples * C.MICROS_PER_SECOND / sampleRate;
+
+            if(!consumed && !skip(frameSize - 4)) break;
+        }
+
+        return createIndex(timeUs, times, positions);
+    }
+
+    private SeekIndex createIndex(long durationUs, LongArray times, LongArray positions) {
+        return new SeekIndex(durationUs, times.toArray(), positions.toArray(), contentLength, lastModified);
+    }
+
+    /**
+     * Reads the whole frame, checking whether it's a header frame without audio
+     */
+    private boolean isInfoFrame(MpegAudioHeader header, int frameSize) throws IOException {
+        int xingOffset;
+
+        if(header.version == MPEG_VERSION_1) {
+            xingOffset = header.channels != 1 ? 36 : 21;
+        } else {
+            xingOffset = header.channels != 1 ? 21 : 13;
+        }
+
+        int length = Math.min(36 + 4, frameSize - 4);
+        if(!readFully(buffer, 0, length)) return false;
+
+        boolean info = matches(xingOffset - 4, "Xing") || matches(xingOffset - 4, "Info") || matches(36 - 4, "VBRI");
+
+        skip(frameSize - 4 - length);
+        return info;
+    }
+
+    private boolean matches(int offset, String tag) {
+        if(offset < 0 || offset + 4 > buffer.length) return false;
+
+        for(int i = 0; i < 4; i++) {
+            if(buffer[offset + i] != tag.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void skipId3() throws IOException {
+        in.mark(10);
+
+        if(!readFully(buffer, 0, 10) || buffer[0] != 'I' || buffer[1] != 'D' || buffer[2] != '3') {
+            in.reset();
+            position = 0;
+            return;
+        }
+
+        int size = ((buffer[6] & 0x7F) << 21) | ((buffer[7] & 0x7F) << 14) | ((buffer[8] & 0x7F) << 7) | (buffer[9] & 0x7F);
+        if((buffer[5] & 0x10) != 0) size += 10; // Footer
+
+        skip(size);
+    }
+
+    private boolean readFully(byte[] data, int offset, int length) throws IOException {
+        while(length > 0) {
+            int read = in.read(data, offset, length);
+            if(read == -1) return false;
+
+            offset += read;
+            length -= read;
+            position += read;
+        }
+
+        return true;
+    }
+
+    private boolean skip(long count) throws IOException {
+        while(count > 0) {
+            long skipped = in.skip(count);
+
+            if(skipped <= 0) {
+                // Some streams can't skip, but can still be read
+                if(in.read() == -1) return false;
+                skipped = 1;
+            }
+
+            count -= skipped;
+            position += skipped;
+        }
+
+        return true;
+    }
+
+    /**
+     * A growable array of primitive longs
+     */
+    private static class LongArray {
+
+        private long[] values = new long[256];
+        private int size = 0;
+
+        private void add(long value) {
+            if(size == values.length) {
+                long[] array = new long[size * 2];
+                System.arraycopy(values, 0, array, 0, size);
+                values = array;
+            }
+            values[size++] = value;
+        }
+
+        private long[] toArray() {
+            long[] array = new long[size];
+            System.arraycopy(values, 0, array, 0, size);
+            return array;
+        }
+
+    }
+
+}
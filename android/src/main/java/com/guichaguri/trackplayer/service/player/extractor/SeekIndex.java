@@ -0,0 +1,123 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.util.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A compact table mapping times to byte offsets of a file.
+ * The file length and modification time are kept, so the index can be discarded when the file changes.
+ *
+ * @author Guichaguri
+ */
+public class SeekIndex implements SeekMap {
+
+    private static final int MAGIC = 0x54505349; // TPSI
+    private static final int VERSION = 2;
+
+    private final long durationUs;
+    private final long[] timesUs;
+    private final long[] positions;
+
+    private final long contentLength;
+    private final long lastModified;
+
+    /**
+     * @param contentLength The file length or {@link C#LENGTH_UNSET}
+     * @param lastModified The file modification time or {@code 0} when it's not a file
+     */
+    public SeekIndex(long durationUs, long[] timesUs, long[] positions, long contentLength, long lastModified) {
+        this.durationUs = durationUs;
+        this.timesUs = timesUs;
+        this.positions = positions;
+        this.contentLength = contentLength;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Whether the index was built from the same version of the file
+     * @param contentLength The current file length or {@link C#LENGTH_UNSET} if it's unknown
+     * @param lastModified The current modification time
+     */
+    public boolean matches(long contentLength, long lastModified) {
+        if(contentLength != C.LENGTH_UNSET && contentLength != this.contentLength) return false;
+        return lastModified == this.lastModified;
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return timesUs.length > 0;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    @Override
+    public SeekPoints getSeekPoints(long timeUs) {
+        if(timesUs.length == 0) return new SeekPoints(SeekPoint.START);
+
+        int i = Util.binarySearchFloor(timesUs, timeUs, true, true);
+        SeekPoint point = new SeekPoint(timesUs[i], positions[i]);
+
+        if(point.timeUs >= timeUs || i == timesUs.length - 1) return new SeekPoints(point);
+
+        return new SeekPoints(point, new SeekPoint(timesUs[i + 1], positions[i + 1]));
+    }
+
+    /**
+     * Gets the time of a position in the table, used to rebase the timestamps after a seek
+     * @return The time or {@code -1} if the position is not an entry of the table
+     */
+    public long getTimeUs(long position) {
+        int i = Util.binarySearchFloor(positions, position, true, true);
+        return i >= 0 && positions[i] == position ? timesUs[i] : -1;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(durationUs);
+        out.writeLong(contentLength);
+        out.writeLong(lastModified);
+        out.writeInt(timesUs.length);
+
+        // The entries are stored as deltas, which fit in integers
+        long lastTime = 0, lastPosition = 0;
+
+        for(int i = 0; i < timesUs.length; i++) {
+            out.writeInt((int)(timesUs[i] - lastTime));
+            out.writeInt((int)(positions[i] - lastPosition));
+            lastTime = timesUs[i];
+            lastPosition = positions[i];
+        }
+    }
+
+    public static SeekIndex read(DataInputStream in) throws IOException {
+        if(in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Invalid seek index");
+
+        long durationUs = in.readLong();
+        long contentLength = in.readLong();
+        long lastModified = in.readLong();
+        int count = in.readInt();
+
+        long[] timesUs = new long[count];
+        long[] positions = new long[count];
+        long lastTime = 0, lastPosition = 0;
+
+        for(int i = 0; i < count; i++) {
+            lastTime += in.readInt();
+            lastPosition += in.readInt();
+            timesUs[i] = lastTime;
+            positions[i] = lastPosition;
+        }
+
+        return new SeekIndex(durationUs, timesUs, positions, contentLength, lastModified);
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.guichaguri.trackplayer.service.Utils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores the seek indexes on disk, keeping the recently used ones in memory.
+ * Indexes built from another version of the file are discarded when they're requested.
+ *
+ * @author Guichaguri
+ */
+public class SeekIndexStore {
+
+    private static final int MAX_LOADED = 8;
+
+    private final File dir;
+    private final Map<String, SeekIndex> loaded = new LinkedHashMap<String, SeekIndex>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SeekIndex> eldest) {
+            return size() > MAX_LOADED;
+        }
+    };
+
+    public SeekIndexStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Gets the modification time of a local file
+     * @return The time or {@code 0} if the url is not a file, such as an asset or a remote file
+     */
+    public static long getLastModified(String url) {
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        String path = uri.getPath();
+
+        if(scheme != null && !scheme.equals(ContentResolver.SCHEME_FILE)) return 0;
+        if(path == null || path.startsWith("/android_asset/")) return 0;
+
+        return new File(path).lastModified();
+    }
+
+    /**
+     * Gets the index of a url, loading it from the disk if needed. Should not be called in the main thread.
+     * @param contentLength The current file length or {@link com.google.android.exoplayer2.C#LENGTH_UNSET}
+     * @param lastModified The current file modification time, from {@link #getLastModified(String)}
+     * @return The index or {@code null} if there's none or it was built from another version of the file
+     */
+    public SeekIndex get(String url, long contentLength, long lastModified) {
+        SeekIndex index;
+
+        synchronized(loaded) {
+            index = loaded.get(url);
+        }
+
+        File file = getFile(url);
+
+        if(index == null) {
+            index = read(file);
+            if(index == null) return null;
+        }
+
+        if(!index.matches(contentLength, lastModified)) {
+            // The file has been replaced, the offsets are no longer valid
+            synchronized(loaded) {
+                loaded.remove(url);
+            }
+            file.delete();
+            return null;
+        }
+
+        synchronized(loaded) {
+            loaded.put(url, index);
+        }
+
+        return index;
+    }
+
+    private SeekIndex read(File file) {
+        if(!file.exists()) return null;
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return SeekIndex.read(in);
+        } catch(IOException ex) {
+            Log.w(Utils.LOG, "Couldn't read the seek index, discarding it", ex);
+            file.delete();
+            return null;
+        } finally {
+            Util.closeQuietly(in);
+        }
+    }
+
+    public void put(String url, SeekIndex index) {
+        synchronized(loaded) {
+            loaded.put(url, index);
+        }
+
+        if(!dir.exists() && !dir.mkdirs()) return;
+
+        File file = getFile(url);
+        File temp = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            index.write(out);
+            out.close();
+            out = null;
+        } catch(IOException ex) {
+            Log.w(Utils.LOG, "Couldn't write the seek index", ex);
+            Util.closeQuietly(out);
+            temp.delete();
+            return;
+        }
+
+        if(!temp.renameTo(file)) temp.delete();
+    }
+
+    private File getFile(String url) {
+        return new File(dir, hash(url) + ".idx");
+    }
+
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+
+            for(byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return builder.toString();
+        } catch(Exception ex) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+}
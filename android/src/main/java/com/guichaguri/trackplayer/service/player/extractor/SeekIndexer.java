@@ -0,0 +1,127 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.DummyDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.util.Util;
+import com.guichaguri.trackplayer.service.Utils;
+import com.guichaguri.trackplayer.service.player.LocalFileDataSource;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the seek indexes of local and fully cached MP3 files in a background thread.
+ * Remote files are never downloaded for indexing, files that are only partially cached are skipped
+ * until they're complete. Each file is read at most once per session, failures are not retried.
+ *
+ * @author Guichaguri
+ */
+public class SeekIndexer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // ContentMetadataInternal.METADATA_NAME_LENGTH, which is not public
+    private static final String METADATA_LENGTH = "exo_len";
+
+    private final Context context;
+    private final SeekIndexStore store;
+    // The files that were indexed or attempted
+    private final Set<String> indexing = new HashSet<>();
+    private ExecutorService executor;
+
+    public SeekIndexer(Context context) {
+        this.context = context.getApplicationContext();
+        this.store = new SeekIndexStore(new File(context.getCacheDir(), "TrackPlayerSeek"));
+    }
+
+    public SeekIndexStore getStore() {
+        return store;
+    }
+
+    /**
+     * Indexes a file if it has no index yet. Has to be called in the main thread.
+     * @param uri The file uri
+     * @param cache The cache holding remote files or {@code null} to only index local files
+     */
+    public void index(Uri uri, Cache cache) {
+        boolean local = Utils.isLocal(uri);
+        if(!local && cache == null) return;
+
+        String url = uri.toString();
+        if(indexing.contains(url)) return;
+
+        long length = C.LENGTH_UNSET;
+
+        if(!local) {
+            // Checks whether the file is complete, without reading it
+            length = cache.getContentMetadata(url).get(METADATA_LENGTH, C.LENGTH_UNSET);
+            if(length == C.LENGTH_UNSET || !cache.isCached(url, 0, length)) return;
+        }
+
+        indexing.add(url);
+
+        if(executor == null) executor = Executors.newSingleThreadExecutor();
+
+        long contentLength = length;
+        executor.execute(() -> build(uri, local ? null : cache, contentLength));
+    }
+
+    public void destroy() {
+        if(executor != null) executor.shutdownNow();
+        executor = null;
+        indexing.clear();
+    }
+
+    /**
+     * Builds the index, unless there's already one for the current version of the file
+     * @param contentLength The length of a cached file or {@link C#LENGTH_UNSET} for a local file
+     */
+    private void build(Uri uri, Cache cache, long contentLength) {
+        DataSource source;
+
+        if(cache == null) {
+            source = new LocalFileDataSource(context, new DefaultDataSource(context, null, DummyDataSource.INSTANCE));
+        } else {
+            // The dummy upstream fails the indexing as soon as it reaches a part that is not cached
+            source = new CacheDataSource(cache, DummyDataSource.INSTANCE);
+        }
+
+        String url = uri.toString();
+        DataSpec spec = new DataSpec(uri);
+        InputStream in = null;
+
+        try {
+            if(contentLength == C.LENGTH_UNSET) {
+                // Opens the local file once just for its length
+                contentLength = source.open(spec);
+                source.close();
+            }
+
+            long lastModified = SeekIndexStore.getLastModified(url);
+            if(store.get(url, contentLength, lastModified) != null) return;
+
+            in = new BufferedInputStream(new DataSourceInputStream(source, spec), BUFFER_SIZE);
+            SeekIndex index = Mp3Indexer.index(in, contentLength, lastModified);
+
+            if(index.isSeekable()) store.put(url, index);
+        } catch(Exception ex) {
+            Log.d(Utils.LOG, "Couldn't index " + uri + ": " + ex);
+        } finally {
+            Util.closeQuietly(in);
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+
+/**
+ * Creates only the extractor of a known container, skipping the sniffing of every other container
+ *
+ * @author Guichaguri
+ */
+public class SingleExtractorsFactory implements ExtractorsFactory {
+
+    private final Class<? extends Extractor> extractor;
+
+    public SingleExtractorsFactory(Class<? extends Extractor> extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public Extractor[] createExtractors() {
+        try {
+            return new Extractor[] {extractor.newInstance()};
+        } catch(Exception ex) {
+            throw new IllegalStateException("Couldn't create the extractor " + extractor.getName(), ex);
+        }
+    }
+
+}
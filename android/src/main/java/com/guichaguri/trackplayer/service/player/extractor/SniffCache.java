@@ -0,0 +1,36 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which extractor recognized each url, so the next loads can skip the sniffing
+ *
+ * @author Guichaguri
+ */
+public class SniffCache {
+
+    private static final int MAX_ENTRIES = 500;
+
+    private final Map<String, Class<? extends Extractor>> entries =
+            new LinkedHashMap<String, Class<? extends Extractor>>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Class<? extends Extractor>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public synchronized Class<? extends Extractor> get(String url) {
+        return entries.get(url);
+    }
+
+    public synchronized void put(String url, Class<? extends Extractor> extractor) {
+        entries.put(url, extractor);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import java.io.IOException;
+
+/**
+ * Sniffs the container through the default extractors, recording the one that recognized the url
+ *
+ * @author Guichaguri
+ */
+public class SniffingExtractorsFactory implements ExtractorsFactory {
+
+    private static final ExtractorsFactory defaultFactory = new DefaultExtractorsFactory();
+
+    private final String url;
+    private final SniffCache cache;
+
+    public SniffingExtractorsFactory(String url, SniffCache cache) {
+        this.url = url;
+        this.cache = cache;
+    }
+
+    @Override
+    public Extractor[] createExtractors() {
+        Extractor[] extractors = defaultFactory.createExtractors();
+
+        for(int i = 0; i < extractors.length; i++) {
+            extractors[i] = new RecordingExtractor(extractors[i]);
+        }
+
+        return extractors;
+    }
+
+    private class RecordingExtractor implements Extractor {
+
+        private final Extractor extractor;
+
+        private RecordingExtractor(Extractor extractor) {
+            this.extractor = extractor;
+        }
+
+        @Override
+        public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+            boolean recognized = extractor.sniff(input);
+
+            // Extractors from extensions (FLAC, Opus...) are not recorded, as they can't be created on their own
+            if(recognized && extractor.getClass().getName().startsWith("com.google.android.exoplayer2.extractor.")) {
+                cache.put(url, extractor.getClass());
+            }
+
+            return recognized;
+        }
+
+        @Override
+        public void init(ExtractorOutput output) {
+            extractor.init(output);
+        }
+
+        @Override
+        public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException, InterruptedException {
+            return extractor.read(input, seekPosition);
+        }
+
+        @Override
+        public void seek(long position, long timeUs) {
+            extractor.seek(position, timeUs);
+        }
+
+        @Override
+        public void release() {
+            extractor.release();
+        }
+
+    }
+
+}
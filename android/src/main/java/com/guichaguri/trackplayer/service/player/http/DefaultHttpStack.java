@@ -0,0 +1,30 @@
+package com.guichaguri.trackplayer.service.player.http;
+
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+/**
+ * The {@code HttpURLConnection} based stack, which relies on the system keep-alive
+ *
+ * @author Guichaguri
+ */
+public class DefaultHttpStack extends HttpStack {
+
+    @Override
+    public HttpDataSource.Factory createFactory(String userAgent, int connectTimeout, int readTimeout) {
+        // Creates a default http source factory, enabling cross protocol redirects
+        return new DefaultHttpDataSourceFactory(
+                userAgent, null,
+                connectTimeout > 0 ? connectTimeout : DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                readTimeout > 0 ? readTimeout : DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS,
+                true
+        );
+    }
+
+    @Override
+    public boolean isEquivalent(HttpStack stack) {
+        return stack instanceof DefaultHttpStack;
+    }
+
+}
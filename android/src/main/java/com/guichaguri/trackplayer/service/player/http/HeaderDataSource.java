@@ -0,0 +1,114 @@
+package com.guichaguri.trackplayer.service.player.http;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies the headers of the requested track to a shared HTTP data source,
+ * retrying once through the {@link TrackAuthenticator} when the server rejects the credentials.
+ *
+ * The track is looked up by the requested uri, unless the source is bound to a track,
+ * which is the case for adaptive streams as their segments have uris of their own.
+ *
+ * @author Guichaguri
+ */
+public class HeaderDataSource implements DataSource {
+
+    public static class Factory implements DataSource.Factory {
+
+        private final HttpDataSource.Factory factory;
+        private final HeaderRegistry registry;
+        private final Track track;
+
+        public Factory(HttpDataSource.Factory factory, HeaderRegistry registry) {
+            this(factory, registry, null);
+        }
+
+        /**
+         * @param track The track every request belongs to or {@code null} to look it up by uri
+         */
+        public Factory(HttpDataSource.Factory factory, HeaderRegistry registry, Track track) {
+            this.factory = factory;
+            this.registry = registry;
+            this.track = track;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new HeaderDataSource(factory.createDataSource(), registry, track);
+        }
+
+    }
+
+    private final HttpDataSource source;
+    private final HeaderRegistry registry;
+    private final Track track;
+
+    public HeaderDataSource(HttpDataSource source, HeaderRegistry registry, Track track) {
+        this.source = source;
+        this.registry = registry;
+        this.track = track;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        source.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        Track track = this.track != null ? this.track : registry.find(dataSpec.uri);
+        Map<String, String> headers = applyHeaders(track);
+
+        try {
+            return source.open(dataSpec);
+        } catch(HttpDataSource.InvalidResponseCodeException ex) {
+            if(track == null || (ex.responseCode != 401 && ex.responseCode != 403)) throw ex;
+            if(!registry.authenticate(track, dataSpec.uri, ex.responseCode, headers)) throw ex;
+
+            applyHeaders(track);
+            return source.open(dataSpec);
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return source.read(buffer, offset, readLength);
+    }
+
+    @Override
+    public Uri getUri() {
+        return source.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return source.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private Map<String, String> applyHeaders(Track track) {
+        source.clearAllRequestProperties();
+        if(track == null) return null;
+
+        Map<String, String> headers = track.headers;
+
+        for(Map.Entry<String, String> header : headers.entrySet()) {
+            source.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        return headers;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.guichaguri.trackplayer.service.player.http;
+
+import android.net.Uri;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the requested uris back to their tracks, so the shared data sources can apply the track headers.
+ *
+ * The same uri can be queued more than once, such as clips of the same file, so every track is kept
+ * until it's unregistered. Adaptive streams request segments other than the track uri,
+ * their data sources are bound to the track instead of going through the registry.
+ *
+ * @author Guichaguri
+ */
+public class HeaderRegistry {
+
+    private static TrackAuthenticator authenticator;
+
+    public static void setAuthenticator(TrackAuthenticator auth) {
+        authenticator = auth;
+    }
+
+    private final Map<String, List<Track>> uris = new HashMap<>();
+
+    public synchronized void register(Track track) {
+        Uri uri = track.getUri();
+        if(uri == null) return;
+
+        List<Track> tracks = uris.get(uri.toString());
+
+        if(tracks == null) {
+            tracks = new ArrayList<>(1);
+            uris.put(uri.toString(), tracks);
+        }
+
+        // The latest track goes last, it's the one used to load the uri
+        tracks.remove(track);
+        tracks.add(track);
+    }
+
+    public synchronized void unregister(Track track) {
+        Uri uri = track.getUri();
+        if(uri == null) return;
+
+        String key = uri.toString();
+        List<Track> tracks = uris.get(key);
+        if(tracks == null) return;
+
+        tracks.remove(track);
+        if(tracks.isEmpty()) uris.remove(key);
+    }
+
+    public synchronized void clear() {
+        uris.clear();
+    }
+
+    /**
+     * Finds the track that requested the uri
+     */
+    public synchronized Track find(Uri uri) {
+        List<Track> tracks = uris.get(uri.toString());
+        return tracks == null ? null : tracks.get(tracks.size() - 1);
+    }
+
+    /**
+     * Refreshes the headers of a track through the authenticator
+     * @param track The track
+     * @param uri The rejected uri
+     * @param responseCode The response code
+     * @param rejected The headers which were rejected
+     * @return Whether the request can be retried
+     */
+    public boolean authenticate(Track track, Uri uri, int responseCode, Map<String, String> rejected) {
+        TrackAuthenticator auth = authenticator;
+        if(auth == null) return false;
+
+        synchronized(track) {
+            // Another request has already refreshed them
+            if(track.headers != rejected) return true;
+
+            Map<String, String> headers = auth.authenticate(track, uri, responseCode);
+            if(headers == null) return false;
+
+            track.headers = headers;
+            return true;
+        }
+    }
+
+}
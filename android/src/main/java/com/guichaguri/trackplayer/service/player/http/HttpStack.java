@@ -0,0 +1,95 @@
+package com.guichaguri.trackplayer.service.player.http;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.guichaguri.trackplayer.service.Utils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * The HTTP client used by the remote data sources
+ *
+ * @author Guichaguri
+ */
+public abstract class HttpStack {
+
+    public static final String DEFAULT = "default";
+    public static final String OKHTTP = "okhttp";
+
+    protected static final int PREWARM_TIMEOUT = 5000;
+
+    /**
+     * Creates the stack configured in the player options.
+     * Falls back to the default stack when the requested one is not available in the build.
+     * @param options The player options
+     * @return The HTTP stack
+     */
+    public static HttpStack create(Bundle options) {
+        String name = options.getString("httpStack", DEFAULT);
+
+        if(OKHTTP.equals(name)) {
+            if(OkHttpStack.isAvailable()) {
+                int maxIdleConnections = (int)options.getDouble("maxIdleConnections", OkHttpStack.DEFAULT_MAX_IDLE_CONNECTIONS);
+                long keepAlive = Utils.toMillis(options.getDouble("keepAliveDuration", Utils.toSeconds(OkHttpStack.DEFAULT_KEEP_ALIVE)));
+
+                return new OkHttpStack(maxIdleConnections, keepAlive);
+            }
+
+            Log.w(Utils.LOG, "OkHttp is not available, enable it in track-player.json. Using the default HTTP stack");
+        }
+
+        return new DefaultHttpStack();
+    }
+
+    /**
+     * Creates a data source factory that goes through this stack
+     * @param userAgent The user agent
+     * @param connectTimeout The connect timeout in milliseconds or {@code 0} for the default one
+     * @param readTimeout The read timeout in milliseconds or {@code 0} for the default one
+     * @return The factory
+     */
+    public abstract HttpDataSource.Factory createFactory(String userAgent, int connectTimeout, int readTimeout);
+
+    /**
+     * Whether this stack has the same configuration as another one
+     */
+    public abstract boolean isEquivalent(HttpStack stack);
+
+    /**
+     * Opens a connection to the host of the uri, leaving it idle in the connection pool.
+     * Called in a background thread.
+     * @param uri The uri that will be loaded
+     * @param userAgent The user agent
+     * @param headers The track headers
+     */
+    public void prewarm(Uri uri, String userAgent, Map<String, String> headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL(uri.toString()).openConnection();
+        connection.setRequestMethod("HEAD");
+        connection.setUseCaches(false);
+        for(Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        connection.setRequestProperty("User-Agent", userAgent);
+        connection.setConnectTimeout(PREWARM_TIMEOUT);
+        connection.setReadTimeout(PREWARM_TIMEOUT);
+        connection.getResponseCode();
+
+        // Closing the stream instead of disconnecting returns the connection to the system pool
+        InputStream stream = connection.getErrorStream();
+        if(stream == null) stream = connection.getInputStream();
+        stream.close();
+    }
+
+    /**
+     * Releases the connections kept by this stack
+     */
+    public void release() {
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.guichaguri.trackplayer.service.player.http;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The OkHttp based stack. All tracks share a single client, so connections are pooled
+ * and kept alive between tracks, and requests to the same host are multiplexed through HTTP/2.
+ *
+ * Only available when OkHttp is enabled in track-player.json
+ *
+ * @author Guichaguri
+ */
+public class OkHttpStack extends HttpStack {
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    public static final long DEFAULT_KEEP_ALIVE = 5 * 60 * 1000;
+
+    public static boolean isAvailable() {
+        try {
+            Class.forName("okhttp3.OkHttpClient");
+            Class.forName("com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory");
+            return true;
+        } catch(ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    private final int maxIdleConnections;
+    private final long keepAlive;
+    private final OkHttpClient client;
+
+    public OkHttpStack(int maxIdleConnections, long keepAlive) {
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAlive = keepAlive;
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.MILLISECONDS))
+                .connectTimeout(DefaultHttpDataSource.DEFAULT_CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .readTimeout(DefaultHttpDataSource.DEFAULT_READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .build();
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    @Override
+    public HttpDataSource.Factory createFactory(String userAgent, int connectTimeout, int readTimeout) {
+        OkHttpClient c = client;
+
+        if(connectTimeout > 0 || readTimeout > 0) {
+            // Derived clients share the connection pool and the dispatcher
+            OkHttpClient.Builder builder = client.newBuilder();
+            if(connectTimeout > 0) builder.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+            if(readTimeout > 0) builder.readTimeout(readTimeout, TimeUnit.MILLISECONDS);
+            c = builder.build();
+        }
+
+        return new OkHttpDataSourceFactory(c, userAgent, (TransferListener)null);
+    }
+
+    @Override
+    public void prewarm(Uri uri, String userAgent, Map<String, String> headers) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(uri.toString())
+                .head();
+
+        for(Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+
+        Request request = builder.header("User-Agent", userAgent).build();
+
+        // The connection goes back to the shared pool once the response is closed
+        Response response = client.newCall(request).execute();
+        response.close();
+    }
+
+    @Override
+    public boolean isEquivalent(HttpStack stack) {
+        if(!(stack instanceof OkHttpStack)) return false;
+
+        OkHttpStack s = (OkHttpStack)stack;
+        return s.maxIdleConnections == maxIdleConnections && s.keepAlive == keepAlive;
+    }
+
+    @Override
+    public void release() {
+        // Closes the idle connections, the ones in use are closed when their requests finish
+        client.connectionPool().evictAll();
+    }
+
+}
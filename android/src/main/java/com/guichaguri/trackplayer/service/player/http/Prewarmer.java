@@ -0,0 +1,78 @@
+package com.guichaguri.trackplayer.service.player.http;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import com.guichaguri.trackplayer.service.Utils;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resolves and opens connections to the hosts of the upcoming tracks ahead of time,
+ * so loading them only waits for the request itself instead of DNS, TCP and TLS.
+ *
+ * @author Guichaguri
+ */
+public class Prewarmer {
+
+    /**
+     * How long a host is considered warm after it was prewarmed
+     */
+    private static final long HOST_TTL = 60 * 1000;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, Long> hosts = new HashMap<>();
+
+    /**
+     * Prewarms the connection to a host, unless it was recently prewarmed.
+     * Has to be called in the main thread, the work is done in a background thread.
+     * @param stack The HTTP stack that will load the uri
+     * @param uri The uri that will be loaded
+     * @param userAgent The user agent
+     * @param headers The track headers, so authenticated hosts don't reject the request
+     */
+    public void prewarm(HttpStack stack, Uri uri, String userAgent, Map<String, String> headers) {
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+
+        if(host == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) return;
+        if(Utils.isLocal(uri)) return;
+
+        String key = scheme + "://" + host + ":" + uri.getPort();
+        long now = SystemClock.elapsedRealtime();
+        Long time = hosts.get(key);
+
+        if(time != null && now - time < HOST_TTL) return;
+
+        hosts.put(key, now);
+        removeExpired(now);
+
+        executor.execute(() -> {
+            try {
+                InetAddress.getAllByName(host);
+                stack.prewarm(uri, userAgent, headers);
+            } catch(Exception ex) {
+                // The track will report the error if the host is actually unreachable
+                Log.d(Utils.LOG, "Couldn't prewarm " + host + ": " + ex);
+            }
+        });
+    }
+
+    public void destroy() {
+        executor.shutdownNow();
+        hosts.clear();
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Long> it = hosts.values().iterator();
+
+        while(it.hasNext()) {
+            if(now - it.next() >= HOST_TTL) it.remove();
+        }
+    }
+
+}
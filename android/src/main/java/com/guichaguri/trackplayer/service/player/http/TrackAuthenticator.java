@@ -0,0 +1,26 @@
+package com.guichaguri.trackplayer.service.player.http;
+
+import android.net.Uri;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.util.Map;
+
+/**
+ * Refreshes the credentials of a track when its server rejects them.
+ *
+ * Register it through {@link com.guichaguri.trackplayer.service.player.DataSourcePool#setAuthenticator(TrackAuthenticator)}
+ *
+ * @author Guichaguri
+ */
+public interface TrackAuthenticator {
+
+    /**
+     * Called in a loader thread when a request of the track fails with 401 or 403.
+     * It can block while the credentials are refreshed, the request is retried once with the returned headers.
+     * @param track The track
+     * @param uri The uri that was requested, which might be a segment of the track
+     * @param responseCode The HTTP response code
+     * @return The new headers of the track or {@code null} to fail the request
+     */
+    Map<String, String> authenticate(Track track, Uri uri, int responseCode);
+
+}
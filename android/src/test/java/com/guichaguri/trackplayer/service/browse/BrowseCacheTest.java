@@ -0,0 +1,106 @@
+package com.guichaguri.trackplayer.service.browse;
+
+import android.os.SystemClock;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Runs on Robolectric, which drives the {@link SystemClock} used for the expiration
+ *
+ * @author Guichaguri
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BrowseCacheTest {
+
+    @Test
+    public void returnsTheCachedPage() {
+        BrowseCache cache = new BrowseCache(10, 1000);
+        List<MediaItem> items = new ArrayList<>();
+
+        cache.put("root", 0, 20, items);
+
+        assertSame(items, cache.get("root", 0, 20));
+        assertNull(cache.get("root", 1, 20));
+        assertNull(cache.get("root", 0, 10));
+    }
+
+    @Test
+    public void expiresAfterTheTTL() {
+        BrowseCache cache = new BrowseCache(10, 1000);
+        List<MediaItem> items = new ArrayList<>();
+
+        cache.put("root", 0, 20, items);
+
+        SystemClock.sleep(999);
+        assertSame(items, cache.get("root", 0, 20));
+
+        SystemClock.sleep(1);
+        assertNull(cache.get("root", 0, 20));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedPage() {
+        BrowseCache cache = new BrowseCache(2, 1000);
+        List<MediaItem> first = new ArrayList<>();
+        List<MediaItem> second = new ArrayList<>();
+        List<MediaItem> third = new ArrayList<>();
+
+        cache.put("root", 0, 20, first);
+        cache.put("root", 1, 20, second);
+        cache.get("root", 0, 20);
+        cache.put("root", 2, 20, third);
+
+        assertSame(first, cache.get("root", 0, 20));
+        assertNull(cache.get("root", 1, 20));
+        assertSame(third, cache.get("root", 2, 20));
+    }
+
+    @Test
+    public void trimsWhenTheLimitIsLowered() {
+        BrowseCache cache = new BrowseCache(3, 1000);
+        List<MediaItem> last = new ArrayList<>();
+
+        cache.put("root", 0, 20, new ArrayList<>());
+        cache.put("root", 1, 20, new ArrayList<>());
+        cache.put("root", 2, 20, last);
+        cache.setMaxPages(1);
+
+        assertNull(cache.get("root", 0, 20));
+        assertNull(cache.get("root", 1, 20));
+        assertSame(last, cache.get("root", 2, 20));
+    }
+
+    @Test
+    public void removesOnlyThePagesOfTheParent() {
+        BrowseCache cache = new BrowseCache(10, 1000);
+        List<MediaItem> other = new ArrayList<>();
+
+        cache.put("album", 0, 20, new ArrayList<>());
+        cache.put("album", 1, 20, new ArrayList<>());
+        cache.put("albums", 0, 20, other);
+        cache.remove("album");
+
+        assertNull(cache.get("album", 0, 20));
+        assertNull(cache.get("album", 1, 20));
+        assertSame(other, cache.get("albums", 0, 20));
+    }
+
+    @Test
+    public void cachesNothingWhenDisabled() {
+        BrowseCache noPages = new BrowseCache(0, 1000);
+        noPages.put("root", 0, 20, new ArrayList<>());
+        assertNull(noPages.get("root", 0, 20));
+
+        BrowseCache noTTL = new BrowseCache(10, 0);
+        noTTL.put("root", 0, 20, new ArrayList<>());
+        assertNull(noTTL.get("root", 0, 20));
+    }
+
+}
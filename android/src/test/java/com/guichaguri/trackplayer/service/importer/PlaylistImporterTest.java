@@ -0,0 +1,190 @@
+package com.guichaguri.trackplayer.service.importer;
+
+import android.net.Uri;
+import android.support.v4.media.RatingCompat;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs on Robolectric for the bundles, the JSON reader and the XML parser
+ *
+ * @author Guichaguri
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PlaylistImporterTest {
+
+    private static final byte[] BOM = {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+
+    @Test
+    public void readerSkipsTheByteOrderMark() throws IOException {
+        BufferedReader withBom = PlaylistImporter.createReader(new ByteArrayInputStream(withBom("abc")));
+        assertEquals("abc", withBom.readLine());
+
+        BufferedReader withoutBom = PlaylistImporter.createReader(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+        assertEquals("abc", withoutBom.readLine());
+    }
+
+    @Test
+    public void parsesJsonWithByteOrderMark() throws Exception {
+        // Without an extension, the format is detected from the content past the mark
+        List<Track> tracks = importPlaylist("http://example.com/music/list",
+                withBom("[{\"id\": \"a\", \"url\": \"a.mp3\", \"title\": \"A\"}]"));
+
+        assertEquals(1, tracks.size());
+        assertEquals("a", tracks.get(0).id);
+        assertEquals("A", tracks.get(0).title);
+        assertEquals("http://example.com/music/a.mp3", tracks.get(0).getUri().toString());
+    }
+
+    @Test
+    public void keepsNumericIdsLiteral() throws Exception {
+        List<Track> tracks = importPlaylist("http://example.com/list.json", ("[" +
+                "{\"id\": 12, \"url\": \"a.mp3\"}," +
+                "{\"id\": 12.5, \"url\": \"b.mp3\"}," +
+                "{\"id\": 9007199254740993, \"url\": \"c.mp3\", \"duration\": 30}" +
+                "]").getBytes("UTF-8"));
+
+        assertEquals(3, tracks.size());
+        assertEquals("12", tracks.get(0).id);
+        assertEquals("12.5", tracks.get(1).id);
+        assertEquals("9007199254740993", tracks.get(2).id);
+
+        // Other numbers are still numbers
+        assertEquals(30000, tracks.get(2).duration);
+    }
+
+    @Test
+    public void readsTheTracksOfAJsonObject() throws Exception {
+        List<Track> tracks = importPlaylist("http://example.com/list.json", ("{" +
+                "\"name\": \"Playlist\"," +
+                "\"tracks\": [{\"url\": \"a.mp3\", \"artist\": \"B\", \"headers\": {\"Cookie\": \"c\"}}, 42]" +
+                "}").getBytes("UTF-8"));
+
+        assertEquals(1, tracks.size());
+        assertEquals("B", tracks.get(0).artist);
+        assertEquals("c", tracks.get(0).headers.get("Cookie"));
+        assertEquals("http://example.com/list.json#0", tracks.get(0).id);
+    }
+
+    @Test
+    public void parsesM3uWithByteOrderMark() throws Exception {
+        List<Track> tracks = importPlaylist("http://example.com/music/list.m3u", withBom(
+                "#EXTM3U\n" +
+                "#EXTINF:123,Artist - Title\n" +
+                "song.mp3\n" +
+                "\n" +
+                "http://other.com/b.mp3\n"));
+
+        assertEquals(2, tracks.size());
+
+        assertEquals("Title", tracks.get(0).title);
+        assertEquals("Artist", tracks.get(0).artist);
+        assertEquals(123000, tracks.get(0).duration);
+        assertEquals("http://example.com/music/song.mp3", tracks.get(0).getUri().toString());
+        assertEquals("http://example.com/music/list.m3u#0", tracks.get(0).id);
+
+        assertEquals("b.mp3", tracks.get(1).title);
+        assertEquals("http://other.com/b.mp3", tracks.get(1).getUri().toString());
+        assertEquals("http://example.com/music/list.m3u#1", tracks.get(1).id);
+    }
+
+    @Test
+    public void parsesPls() throws Exception {
+        // Without an extension, the section header tells it apart from a JSON array
+        List<Track> tracks = importPlaylist("http://example.com/radio", (
+                "[playlist]\n" +
+                "File1=a.mp3\n" +
+                "Title1=One\n" +
+                "Length1=60\n" +
+                "File2=http://other.com/b.mp3\n" +
+                "NumberOfEntries=2\n").getBytes("UTF-8"));
+
+        assertEquals(2, tracks.size());
+        assertEquals("One", tracks.get(0).title);
+        assertEquals(60000, tracks.get(0).duration);
+        assertEquals("http://example.com/a.mp3", tracks.get(0).getUri().toString());
+        assertEquals("http://other.com/b.mp3", tracks.get(1).getUri().toString());
+    }
+
+    @Test
+    public void parsesXspf() throws Exception {
+        List<Track> tracks = importPlaylist("http://example.com/list.xspf", (
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<playlist version=\"1\" xmlns=\"http://xspf.org/ns/0/\">\n" +
+                "  <trackList>\n" +
+                "    <track>\n" +
+                "      <location>a.mp3</location>\n" +
+                "      <location>fallback.mp3</location>\n" +
+                "      <title>Title</title>\n" +
+                "      <creator>Artist</creator>\n" +
+                "      <album>Album</album>\n" +
+                "      <duration>5000</duration>\n" +
+                "    </track>\n" +
+                "    <track><title>No location</title></track>\n" +
+                "  </trackList>\n" +
+                "</playlist>\n").getBytes("UTF-8"));
+
+        assertEquals(1, tracks.size());
+        assertEquals("http://example.com/a.mp3", tracks.get(0).getUri().toString());
+        assertEquals("Title", tracks.get(0).title);
+        assertEquals("Artist", tracks.get(0).artist);
+        assertEquals("Album", tracks.get(0).album);
+        assertEquals(5000, tracks.get(0).duration);
+    }
+
+    private static byte[] withBom(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BOM);
+        out.write(content.getBytes("UTF-8"));
+        return out.toByteArray();
+    }
+
+    private static List<Track> importPlaylist(String url, byte[] content) {
+        PlaylistImporter importer = new PlaylistImporter(RuntimeEnvironment.application, null, Uri.parse(url)) {
+            @Override
+            protected void load() throws Exception {
+                parse(new ByteArrayInputStream(content));
+            }
+        };
+
+        List<Track> tracks = new ArrayList<>();
+        Exception[] error = new Exception[1];
+
+        importer.setListener(new TrackImporter.Listener() {
+            @Override
+            public void onTracksImported(List<Track> imported) {
+                tracks.addAll(imported);
+            }
+
+            @Override
+            public void onImportFinished(int count) {
+                assertEquals(tracks.size(), count);
+            }
+
+            @Override
+            public void onImportFailed(Exception ex) {
+                error[0] = ex;
+            }
+        }, RatingCompat.RATING_NONE);
+
+        importer.run();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertNull(error[0]);
+        return tracks;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.guichaguri.trackplayer.service.player;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Guichaguri
+ */
+public class CrossfadeTest {
+
+    private static final float DELTA = 0.0001F;
+
+    @Test
+    public void linearCurveAddsUpToFullVolume() {
+        Crossfade crossfade = new Crossfade(3000, Crossfade.CURVE_LINEAR);
+
+        assertEquals(0, crossfade.getFadeIn(0), DELTA);
+        assertEquals(1, crossfade.getFadeOut(0), DELTA);
+        assertEquals(0.25F, crossfade.getFadeIn(0.25F), DELTA);
+        assertEquals(0.75F, crossfade.getFadeOut(0.25F), DELTA);
+        assertEquals(1, crossfade.getFadeIn(1), DELTA);
+        assertEquals(0, crossfade.getFadeOut(1), DELTA);
+
+        for(float f = 0; f <= 1; f += 0.05F) {
+            assertEquals(1, crossfade.getFadeIn(f) + crossfade.getFadeOut(f), DELTA);
+        }
+    }
+
+    @Test
+    public void equalPowerCurveKeepsThePowerConstant() {
+        Crossfade crossfade = new Crossfade(3000, Crossfade.CURVE_EQUAL_POWER);
+
+        assertEquals(0, crossfade.getFadeIn(0), DELTA);
+        assertEquals(1, crossfade.getFadeOut(0), DELTA);
+        assertEquals(1, crossfade.getFadeIn(1), DELTA);
+        assertEquals(0, crossfade.getFadeOut(1), DELTA);
+
+        // Both tracks are at -3dB in the middle
+        assertEquals(Math.sqrt(0.5), crossfade.getFadeIn(0.5F), DELTA);
+        assertEquals(Math.sqrt(0.5), crossfade.getFadeOut(0.5F), DELTA);
+
+        for(float f = 0; f <= 1; f += 0.05F) {
+            float in = crossfade.getFadeIn(f), out = crossfade.getFadeOut(f);
+            assertEquals(1, in * in + out * out, DELTA);
+        }
+    }
+
+    @Test
+    public void curvesAreMonotonic() {
+        for(String curve : new String[] {Crossfade.CURVE_LINEAR, Crossfade.CURVE_EQUAL_POWER}) {
+            Crossfade crossfade = new Crossfade(3000, curve);
+            float lastIn = -1, lastOut = 2;
+
+            for(int i = 0; i <= 20; i++) {
+                float f = i / 20F;
+                float in = crossfade.getFadeIn(f), out = crossfade.getFadeOut(f);
+
+                assertTrue(in > lastIn);
+                assertTrue(out < lastOut);
+                lastIn = in;
+                lastOut = out;
+            }
+        }
+    }
+
+    @Test
+    public void defaultsToEqualPower() {
+        Crossfade crossfade = new Crossfade(3000, null);
+        Crossfade equalPower = new Crossfade(3000, Crossfade.CURVE_EQUAL_POWER);
+
+        assertEquals(3000, crossfade.duration);
+        assertEquals(equalPower.getFadeIn(0.3F), crossfade.getFadeIn(0.3F), DELTA);
+        assertEquals(equalPower.getFadeOut(0.3F), crossfade.getFadeOut(0.3F), DELTA);
+    }
+
+}
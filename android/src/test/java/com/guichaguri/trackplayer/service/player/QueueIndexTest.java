@@ -0,0 +1,156 @@
+package com.guichaguri.trackplayer.service.player;
+
+import android.os.Bundle;
+import android.support.v4.media.RatingCompat;
+import com.guichaguri.trackplayer.service.models.Track;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs on Robolectric, as the tracks are built from bundles
+ *
+ * @author Guichaguri
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueueIndexTest {
+
+    private final List<Track> queue = new ArrayList<>();
+    private final QueueIndex index = new QueueIndex();
+
+    @Before
+    public void setUp() {
+        add("Blue Monday", "New Order", "Power, Corruption & Lies");
+        add("Ceremony", "New Order", "Movement");
+        add("Café del Mar", "Energy 52", "Café del Mar");
+        add("Love Will Tear Us Apart", "Joy Division", "Closer");
+        add("Blue Hotel", "Chris Isaak", "Heart Shaped World");
+    }
+
+    @Test
+    public void matchesWordPrefixes() {
+        assertEquals(Arrays.asList(0, 4), search("blu"));
+        assertEquals(Arrays.asList(0, 1), search("new ord"));
+        assertEquals(Collections.singletonList(3), search("tear"));
+        assertEquals(Collections.emptyList(), search("ear"));
+    }
+
+    @Test
+    public void ignoresCaseAndAccents() {
+        assertEquals(Collections.singletonList(2), search("CAFE"));
+        assertEquals(Collections.singletonList(2), search("café mar"));
+    }
+
+    @Test
+    public void requiresEveryWord() {
+        assertEquals(Collections.singletonList(0), search("blue new"));
+        assertEquals(Collections.emptyList(), search("blue division"));
+    }
+
+    @Test
+    public void ignoresEmptyQueries() {
+        List<Integer> results = new ArrayList<>();
+
+        assertEquals(0, index.search("", queue, 0, 10, results));
+        assertEquals(0, index.search(" - ", queue, 0, 10, results));
+        assertEquals(0, results.size());
+    }
+
+    @Test
+    public void pagesThroughTheMatches() {
+        for(int i = 0; i < 20; i++) add(i % 2 == 0 ? "Song " + i : "Other " + i, "Artist", "Album");
+
+        // The matches are at 5, 7, 9... 23, in the queue order
+        List<Integer> page = new ArrayList<>();
+        assertEquals(10, index.search("song", queue, 0, 4, page));
+        assertEquals(Arrays.asList(5, 7, 9, 11), page);
+
+        page.clear();
+        assertEquals(10, index.search("song", queue, 4, 4, page));
+        assertEquals(Arrays.asList(13, 15, 17, 19), page);
+
+        page.clear();
+        assertEquals(10, index.search("song", queue, 8, 4, page));
+        assertEquals(Arrays.asList(21, 23), page);
+
+        page.clear();
+        assertEquals(10, index.search("song", queue, 12, 4, page));
+        assertEquals(0, page.size());
+    }
+
+    @Test
+    public void followsInsertionsAndRemovals() {
+        // Inserting at the start shifts the positions, which are rebuilt on the next search
+        insert(0, "Blue Velvet", "Bobby Vinton", "Blue on Blue");
+        assertEquals(Arrays.asList(0, 1, 5), search("blue"));
+
+        remove(1);
+        assertEquals(Arrays.asList(0, 4), search("blue"));
+
+        // Removing the last track keeps the positions as they are
+        remove(queue.size() - 1);
+        assertEquals(Collections.singletonList(0), search("blue"));
+    }
+
+    @Test
+    public void followsMetadataUpdates() {
+        Track track = queue.get(1);
+        Bundle changes = new Bundle();
+        changes.putString("title", "Temptation");
+        track.update(RuntimeEnvironment.application, changes, RatingCompat.RATING_NONE);
+        index.update(track);
+
+        assertEquals(Collections.emptyList(), search("ceremony"));
+        assertEquals(Collections.singletonList(1), search("tempt"));
+        assertEquals(Arrays.asList(0, 1), search("new order"));
+    }
+
+    @Test
+    public void clears() {
+        index.clear();
+        queue.clear();
+
+        assertEquals(Collections.emptyList(), search("blue"));
+
+        add("Blue", "Artist", "Album");
+        assertEquals(Collections.singletonList(0), search("blue"));
+    }
+
+    private List<Integer> search(String query) {
+        List<Integer> results = new ArrayList<>();
+        int total = index.search(query, queue, 0, Integer.MAX_VALUE, results);
+
+        assertEquals(total, results.size());
+        return results;
+    }
+
+    private void add(String title, String artist, String album) {
+        insert(queue.size(), title, artist, album);
+    }
+
+    private void insert(int position, String title, String artist, String album) {
+        Bundle bundle = new Bundle();
+        bundle.putString("id", title);
+        bundle.putString("url", "http://example.com/" + queue.size() + ".mp3");
+        bundle.putString("title", title);
+        bundle.putString("artist", artist);
+        bundle.putString("album", album);
+
+        Track track = new Track(RuntimeEnvironment.application, bundle, RatingCompat.RATING_NONE);
+        queue.add(position, track);
+        index.add(track, position);
+    }
+
+    private void remove(int position) {
+        index.remove(queue.remove(position));
+    }
+
+}
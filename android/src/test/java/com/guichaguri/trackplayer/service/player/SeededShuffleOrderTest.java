@@ -0,0 +1,140 @@
+package com.guichaguri.trackplayer.service.player;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.ShuffleOrder;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author Guichaguri
+ */
+public class SeededShuffleOrderTest {
+
+    @Test
+    public void sameSeedGivesTheSameOrder() {
+        int[] order = toArray(new SeededShuffleOrder(100, 42, C.INDEX_UNSET));
+
+        assertArrayEquals(order, toArray(new SeededShuffleOrder(100, 42, C.INDEX_UNSET)));
+        assertFalse(Arrays.equals(order, toArray(new SeededShuffleOrder(100, 43, C.INDEX_UNSET))));
+    }
+
+    @Test
+    public void isAPermutation() {
+        int[] order = toArray(new SeededShuffleOrder(100, 42, C.INDEX_UNSET));
+        assertPermutation(order, 100);
+    }
+
+    @Test
+    public void placesTheFirstIndexFirst() {
+        ShuffleOrder order = new SeededShuffleOrder(100, 42, 57);
+
+        assertEquals(57, order.getFirstIndex());
+        assertPermutation(toArray(order), 100);
+    }
+
+    @Test
+    public void neighboursAreConsistent() {
+        ShuffleOrder order = new SeededShuffleOrder(50, 7, C.INDEX_UNSET);
+        int[] array = toArray(order);
+
+        assertEquals(C.INDEX_UNSET, order.getPreviousIndex(array[0]));
+        assertEquals(C.INDEX_UNSET, order.getNextIndex(array[array.length - 1]));
+        assertEquals(array[array.length - 1], order.getLastIndex());
+
+        for(int i = 1; i < array.length; i++) {
+            assertEquals(array[i], order.getNextIndex(array[i - 1]));
+            assertEquals(array[i - 1], order.getPreviousIndex(array[i]));
+        }
+    }
+
+    @Test
+    public void sameUpdatesGiveTheSameOrder() {
+        ShuffleOrder a = new SeededShuffleOrder(20, 42, 3);
+        ShuffleOrder b = new SeededShuffleOrder(20, 42, 3);
+
+        a = a.cloneAndInsert(5, 10).cloneAndRemove(2, 4).cloneAndInsert(0, 1);
+        b = b.cloneAndInsert(5, 10).cloneAndRemove(2, 4).cloneAndInsert(0, 1);
+
+        assertArrayEquals(toArray(a), toArray(b));
+        assertPermutation(toArray(a), 29);
+    }
+
+    @Test
+    public void insertingKeepsTheExistingOrder() {
+        ShuffleOrder order = new SeededShuffleOrder(10, 42, C.INDEX_UNSET);
+        int[] before = toArray(order);
+        int[] after = toArray(order.cloneAndInsert(4, 5));
+
+        assertPermutation(after, 15);
+
+        // The previous indexes keep their relative order, shifted past the inserted ones
+        int[] remaining = new int[before.length];
+        int count = 0;
+
+        for(int index : after) {
+            if(index < 4) remaining[count++] = index;
+            else if(index >= 9) remaining[count++] = index - 5;
+        }
+
+        assertArrayEquals(before, remaining);
+    }
+
+    @Test
+    public void removingKeepsTheRemainingOrder() {
+        ShuffleOrder order = new SeededShuffleOrder(10, 42, C.INDEX_UNSET);
+        int[] before = toArray(order);
+        int[] after = toArray(order.cloneAndRemove(3, 6));
+
+        int[] expected = new int[7];
+        int count = 0;
+
+        for(int index : before) {
+            if(index < 3) expected[count++] = index;
+            else if(index >= 6) expected[count++] = index - 3;
+        }
+
+        assertArrayEquals(expected, after);
+    }
+
+    @Test
+    public void clearingEmptiesTheOrder() {
+        ShuffleOrder order = new SeededShuffleOrder(10, 42, C.INDEX_UNSET).cloneAndClear();
+
+        assertEquals(0, order.getLength());
+        assertEquals(C.INDEX_UNSET, order.getFirstIndex());
+        assertEquals(C.INDEX_UNSET, order.getLastIndex());
+    }
+
+    @Test
+    public void keepsAGivenOrder() {
+        int[] order = {3, 0, 2, 1};
+        assertArrayEquals(order, toArray(new SeededShuffleOrder(42, order)));
+    }
+
+    private static int[] toArray(ShuffleOrder order) {
+        int[] array = new int[order.getLength()];
+        int index = order.getFirstIndex();
+
+        for(int i = 0; i < array.length; i++) {
+            array[i] = index;
+            index = order.getNextIndex(index);
+        }
+
+        assertEquals(C.INDEX_UNSET, index);
+        return array;
+    }
+
+    private static void assertPermutation(int[] order, int length) {
+        assertEquals(length, order.length);
+
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+
+        for(int i = 0; i < length; i++) assertEquals(i, sorted[i]);
+    }
+
+}
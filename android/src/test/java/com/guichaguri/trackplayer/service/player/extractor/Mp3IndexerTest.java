@@ -0,0 +1,146 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekMap.SeekPoints;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Indexes synthetic files made of silent MPEG-1 Layer III frames
+ *
+ * @author Guichaguri
+ */
+public class Mp3IndexerTest {
+
+    // 128kbps, 44.1kHz, stereo, without padding
+    private static final int HEADER = 0xFFFB9000;
+    private static final int FRAME_SIZE = 417;
+    private static final int SAMPLES_PER_FRAME = 1152;
+    private static final int SAMPLE_RATE = 44100;
+
+    @Test
+    public void derivesTheTimesFromTheSampleCount() throws IOException {
+        int frames = 10000;
+        SeekIndex index = Mp3Indexer.index(createFile(0, false, frames), C.LENGTH_UNSET, 0);
+
+        // Adding up the rounded frame duration (26122us) would be off by 4.5ms at the end
+        assertEquals(getTimeUs(frames), index.getDurationUs());
+        assertTrue(index.isSeekable());
+
+        for(int second = 0; second < 260; second++) {
+            SeekPoints points = index.getSeekPoints(second * C.MICROS_PER_SECOND);
+            long position = points.first.position;
+
+            assertEquals(0, position % FRAME_SIZE);
+            assertEquals(getTimeUs(position / FRAME_SIZE), points.first.timeUs);
+            assertTrue(points.first.timeUs <= second * C.MICROS_PER_SECOND);
+        }
+    }
+
+    @Test
+    public void placesAnEntryEverySecond() throws IOException {
+        SeekIndex index = Mp3Indexer.index(createFile(0, false, 1000), C.LENGTH_UNSET, 0);
+        long last = -1;
+
+        for(long timeUs = 0; timeUs < index.getDurationUs(); timeUs += 100000) {
+            long entry = index.getSeekPoints(timeUs).first.timeUs;
+            if(entry == last) continue;
+
+            // Each entry is the first frame starting after the previous entry plus a second
+            if(last != -1) {
+                assertTrue(entry >= last + C.MICROS_PER_SECOND);
+                assertTrue(entry < last + C.MICROS_PER_SECOND + getTimeUs(1));
+            }
+            last = entry;
+        }
+    }
+
+    @Test
+    public void skipsTheId3Tag() throws IOException {
+        int tagSize = 300;
+        SeekIndex index = Mp3Indexer.index(createFile(tagSize, false, 100), C.LENGTH_UNSET, 0);
+
+        assertEquals(getTimeUs(100), index.getDurationUs());
+        assertEquals(10 + tagSize, index.getSeekPoints(0).first.position);
+        assertEquals(0, index.getTimeUs(10 + tagSize));
+    }
+
+    @Test
+    public void skipsTheXingFrame() throws IOException {
+        SeekIndex index = Mp3Indexer.index(createFile(0, true, 100), C.LENGTH_UNSET, 0);
+
+        // The info frame has no audio, the first entry is the next frame
+        assertEquals(getTimeUs(100), index.getDurationUs());
+        assertEquals(FRAME_SIZE, index.getSeekPoints(0).first.position);
+    }
+
+    @Test
+    public void resyncsAfterGarbage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeFrames(out, 50);
+        out.write(new byte[123]);
+        writeFrames(out, 50);
+
+        SeekIndex index = Mp3Indexer.index(new ByteArrayInputStream(out.toByteArray()), C.LENGTH_UNSET, 0);
+        assertEquals(getTimeUs(100), index.getDurationUs());
+    }
+
+    @Test
+    public void storesTheFileVersion() throws IOException {
+        SeekIndex index = Mp3Indexer.index(createFile(0, false, 10), 4170, 1234);
+
+        assertTrue(index.matches(4170, 1234));
+        assertTrue(index.matches(C.LENGTH_UNSET, 1234));
+        assertFalse(index.matches(4171, 1234));
+        assertFalse(index.matches(4170, 1235));
+    }
+
+    private static long getTimeUs(long frames) {
+        return frames * SAMPLES_PER_FRAME * C.MICROS_PER_SECOND / SAMPLE_RATE;
+    }
+
+    private static ByteArrayInputStream createFile(int tagSize, boolean xing, int frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        if(tagSize > 0) {
+            // ID3v2.4 header, the size is a synchsafe integer
+            out.write(new byte[] {'I', 'D', '3', 4, 0, 0,
+                    (byte)((tagSize >> 21) & 0x7F), (byte)((tagSize >> 14) & 0x7F),
+                    (byte)((tagSize >> 7) & 0x7F), (byte)(tagSize & 0x7F)});
+            out.write(new byte[tagSize]);
+        }
+
+        if(xing) {
+            byte[] frame = createFrame();
+            frame[36] = 'X';
+            frame[37] = 'i';
+            frame[38] = 'n';
+            frame[39] = 'g';
+            out.write(frame);
+        }
+
+        writeFrames(out, frames);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private static void writeFrames(ByteArrayOutputStream out, int frames) throws IOException {
+        byte[] frame = createFrame();
+        for(int i = 0; i < frames; i++) out.write(frame);
+    }
+
+    private static byte[] createFrame() {
+        byte[] frame = new byte[FRAME_SIZE];
+        frame[0] = (byte)(HEADER >>> 24);
+        frame[1] = (byte)(HEADER >>> 16);
+        frame[2] = (byte)(HEADER >>> 8);
+        frame[3] = (byte)HEADER;
+        return frame;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.guichaguri.trackplayer.service.player.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekMap.SeekPoints;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Guichaguri
+ */
+public class SeekIndexTest {
+
+    private static final long[] TIMES = {0, 1000000, 2000500, 3001000};
+    private static final long[] POSITIONS = {100, 16100, 32200, 48350};
+
+    @Test
+    public void roundTrips() throws IOException {
+        SeekIndex index = new SeekIndex(3500000, TIMES, POSITIONS, 60000, 1234);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(out));
+        SeekIndex read = SeekIndex.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(3500000, read.getDurationUs());
+        assertTrue(read.matches(60000, 1234));
+
+        for(int i = 0; i < TIMES.length; i++) {
+            assertEquals(TIMES[i], read.getTimeUs(POSITIONS[i]));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        SeekIndex.read(new DataInputStream(new ByteArrayInputStream(new byte[32])));
+    }
+
+    @Test
+    public void returnsTheSurroundingEntries() {
+        SeekIndex index = new SeekIndex(3500000, TIMES, POSITIONS, 60000, 1234);
+
+        SeekPoints between = index.getSeekPoints(1500000);
+        assertEquals(1000000, between.first.timeUs);
+        assertEquals(16100, between.first.position);
+        assertEquals(2000500, between.second.timeUs);
+        assertEquals(32200, between.second.position);
+
+        SeekPoints exact = index.getSeekPoints(2000500);
+        assertEquals(32200, exact.first.position);
+        assertEquals(exact.first, exact.second);
+
+        SeekPoints end = index.getSeekPoints(3400000);
+        assertEquals(48350, end.first.position);
+        assertEquals(end.first, end.second);
+    }
+
+    @Test
+    public void onlyMapsTheEntryPositions() {
+        SeekIndex index = new SeekIndex(3500000, TIMES, POSITIONS, 60000, 1234);
+
+        assertEquals(2000500, index.getTimeUs(32200));
+        assertEquals(-1, index.getTimeUs(32201));
+        assertEquals(-1, index.getTimeUs(0));
+    }
+
+    @Test
+    public void detectsChangedFiles() {
+        SeekIndex index = new SeekIndex(3500000, TIMES, POSITIONS, 60000, 1234);
+
+        assertTrue(index.matches(C.LENGTH_UNSET, 1234));
+        assertFalse(index.matches(60001, 1234));
+        assertFalse(index.matches(60000, 1235));
+    }
+
+    @Test
+    public void emptyIndexIsNotSeekable() {
+        SeekIndex index = new SeekIndex(0, new long[0], new long[0], C.LENGTH_UNSET, 0);
+
+        assertFalse(index.isSeekable());
+        assertEquals(0, index.getSeekPoints(1000).first.position);
+    }
+
+}
@@ -9,6 +9,7 @@ declare namespace RNTrackPlayer {
   export type EventType = 'playback-state'
     | 'playback-error'
     | 'playback-queue-ended'
+    | 'playback-queue-imported'
     | 'playback-track-changed'
     | 'remote-play'
     | 'remote-pause'
@@ -18,14 +19,45 @@ declare namespace RNTrackPlayer {
     | 'remote-jump-forward'
     | 'remote-jump-backward'
     | 'remote-seek'
+    | 'remote-play-id'
+    | 'remote-play-search'
 
   type Handler = (type: EventType, ...args: any[]) => void;
   export function registerEventHandler(handler: Handler): void;
 
+  export interface BrowseItem {
+    id: string;
+    title: string;
+    subtitle?: string;
+    artist?: string;
+    description?: string;
+    artwork?: string|number;
+    browsable?: boolean;
+    playable?: boolean;
+  }
+
+  export interface BrowseRequest {
+    parentId: string;
+    page: number;
+    pageSize: number;
+  }
+
+  type BrowseProvider = (request: BrowseRequest) => Promise<BrowseItem[]>|BrowseItem[];
+  export function registerBrowseProvider(provider: BrowseProvider|null): Promise<void>;
+  export function invalidateBrowseChildren(parentId?: string): Promise<void>;
+
   
   // General
 
   export interface PlayerOptions {
+    httpStack?: 'default' | 'okhttp';
+    maxIdleConnections?: number;
+    keepAliveDuration?: number;
+    seekIndexing?: boolean;
+    warmStandby?: boolean;
+    crossfadeDuration?: number;
+    crossfadeCurve?: 'linear' | 'equal-power';
+
     ratingType?: any;
     maxArtworkSize?: number;
     capabilities?: string[];
@@ -64,6 +96,12 @@ declare namespace RNTrackPlayer {
     rating?: any;
     artwork?: string;
     sendUrl?: boolean;
+    userAgent?: string;
+    headers?: { [key: string]: string };
+    connectTimeout?: number;
+    readTimeout?: number;
+    start?: number;
+    end?: number;
     [key: string]: any;
   }
 
@@ -74,6 +112,49 @@ declare namespace RNTrackPlayer {
   export function skipToNext(): Promise<void>;
   export function skipToPrevious(): Promise<void>;
   export function removeUpcomingTracks(): Promise<void>;
+  export function updateMetadataForTrack(playerId: number, trackId: string, metadata: Partial<Track>): Promise<void>;
+  export interface MediaStoreOptions {
+    selection?: string;
+    selectionArgs?: string[];
+    sortOrder?: string;
+    internal?: boolean;
+  }
+
+  export function addFromPlaylist(playerId: number, url: string|number): Promise<number>;
+  export function addFromMediaStore(playerId: number, options?: MediaStoreOptions): Promise<number>;
+  // Switching keeps the tracks and the position of each queue, the player still reloads the queue and refills its buffers.
+  // Only the two most recently used idle queues keep their media sources, older ones are rebuilt when switched back to.
+  export function switchQueue(playerId: number, name: string): Promise<void>;
+  export function removeQueue(playerId: number, name: string): Promise<void>;
+  export function getQueues(playerId: number): Promise<string[]>;
+  export function getActiveQueue(playerId: number): Promise<string>;
+
+  export interface QueueSearchResults {
+    total: number;
+    results: { id: string, position: number }[];
+  }
+
+  export function searchQueue(playerId: number, query: string, offset?: number, limit?: number): Promise<QueueSearchResults>;
+  export function setStandbyHint(playerId: number, trackId: string|null): Promise<void>;
+
+
+  // Sound Effects
+
+  export interface Sound {
+    id: string;
+    url: string|number;
+  }
+
+  export interface SoundOptions {
+    volume?: number;
+    rate?: number;
+    loop?: boolean;
+  }
+
+  export function loadSound(sound: Sound): Promise<void>;
+  export function playSound(soundId: string, options?: SoundOptions): Promise<number>;
+  export function stopSound(streamId: number): Promise<void>;
+  export function unloadSound(soundId: string): Promise<void>;
 
 
   // Player Playback Commands
@@ -85,6 +166,9 @@ declare namespace RNTrackPlayer {
   export function seekTo(time: number): Promise<void>;
   export function setVolume(level: number): Promise<void>;
   export function setRate(rate: number): Promise<void>;
+  export function setRepeatMode(playerId: number, mode: number): Promise<void>;
+  export function setShuffleMode(playerId: number, enabled: boolean, seed?: number): Promise<void>;
+  export function setCrossfade(playerId: number, duration: number, curve?: 'linear' | 'equal-power'): Promise<void>;
 
 
   // Player Getters
@@ -97,6 +181,8 @@ declare namespace RNTrackPlayer {
   export function getBufferedPosition(): Promise<number>;
   export function getState(): Promise<string>;
   export function getRate(): Promise<number>;
+  export function getRepeatMode(playerId: number): Promise<number>;
+  export function getShuffleMode(playerId: number): Promise<boolean>;
 }
 
 // Components
@@ -60,6 +60,164 @@ function remove(playerId, tracks) {
     return TrackPlayer.remove(playerId, tracks);
 }
 
+function updateMetadataForTrack(playerId, trackId, metadata) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    // Clone the object before modifying it
+    metadata = Object.assign({}, metadata);
+
+    // Resolve the artwork URL
+    if('artwork' in metadata) metadata.artwork = resolveUrl(metadata.artwork);
+
+    return TrackPlayer.updateMetadataForTrack(playerId, `${trackId}`, metadata);
+}
+
+function registerBrowseProvider(provider) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    DeviceEventEmitter.removeAllListeners('browse-load-children');
+
+    if(!provider) return TrackPlayer.registerBrowseProvider(false);
+
+    DeviceEventEmitter.addListener('browse-load-children', async (request) => {
+        const { requestId, parentId, page, pageSize } = request;
+        let items = null;
+
+        try {
+            items = await provider({ parentId, page, pageSize });
+        } catch(e) {
+            console.warn('The browse provider failed to load ' + parentId, e);
+        }
+
+        if(items) {
+            items = items.map(item => Object.assign({}, item, {
+                id: `${item.id}`,
+                artwork: resolveUrl(item.artwork)
+            }));
+        }
+
+        TrackPlayer.setBrowseChildren(requestId, items || null).catch(() => {});
+    });
+
+    return TrackPlayer.registerBrowseProvider(true);
+}
+
+function invalidateBrowseChildren(parentId) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.invalidateBrowseChildren(parentId || null);
+}
+
+function addFromPlaylist(playerId, url) {
+    if(Platform.OS !== 'android') return Promise.resolve(0);
+
+    return TrackPlayer.addFromPlaylist(playerId, { url: resolveUrl(url) });
+}
+
+function addFromMediaStore(playerId, options) {
+    if(Platform.OS !== 'android') return Promise.resolve(0);
+
+    return TrackPlayer.addFromMediaStore(playerId, options || {});
+}
+
+function switchQueue(playerId, name) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.switchQueue(playerId, `${name}`);
+}
+
+function removeQueue(playerId, name) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.removeQueue(playerId, `${name}`);
+}
+
+function getQueues(playerId) {
+    if(Platform.OS !== 'android') return Promise.resolve(['default']);
+
+    return TrackPlayer.getQueues(playerId);
+}
+
+function searchQueue(playerId, query, offset, limit) {
+    if(Platform.OS !== 'android') return Promise.resolve({ total: 0, results: [] });
+
+    return TrackPlayer.searchQueue(playerId, `${query}`, offset || 0, limit || 50);
+}
+
+function getActiveQueue(playerId) {
+    if(Platform.OS !== 'android') return Promise.resolve('default');
+
+    return TrackPlayer.getActiveQueue(playerId);
+}
+
+function setRepeatMode(playerId, mode) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.setRepeatMode(playerId, mode);
+}
+
+function getRepeatMode(playerId) {
+    if(Platform.OS !== 'android') return Promise.resolve(0);
+
+    return TrackPlayer.getRepeatMode(playerId);
+}
+
+function getShuffleMode(playerId) {
+    if(Platform.OS !== 'android') return Promise.resolve(false);
+
+    return TrackPlayer.getShuffleMode(playerId);
+}
+
+function setShuffleMode(playerId, enabled, seed) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    // The same seed always gives the same order
+    if(seed == null) seed = Math.floor(Math.random() * 2147483647);
+
+    return TrackPlayer.setShuffleMode(playerId, !!enabled, seed);
+}
+
+function setStandbyHint(playerId, trackId) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.setStandbyHint(playerId, trackId != null ? `${trackId}` : null);
+}
+
+function setCrossfade(playerId, duration, curve) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.setCrossfade(playerId, duration || 0, curve || 'equal-power');
+}
+
+function loadSound(sound) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    // Clone the object before modifying it
+    sound = Object.assign({}, sound);
+    sound.url = resolveUrl(sound.url);
+    sound.id = `${sound.id}`;
+
+    return TrackPlayer.loadSound(sound);
+}
+
+function playSound(id, options) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.playSound(`${id}`, options || {});
+}
+
+function stopSound(streamId) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.stopSound(streamId);
+}
+
+function unloadSound(id) {
+    if(Platform.OS !== 'android') return Promise.resolve();
+
+    return TrackPlayer.unloadSound(`${id}`);
+}
+
 function warpEventResponse(handler, event, payload) {
     // transform into headlessTask format and return to handler
     const additionalKeys = payload || {};
@@ -87,7 +245,8 @@ function registerEventHandler(handler) {
     ];
 
     if (isAndroid) {
-        events.push('remote-skip', 'remote-duck', 'remote-set-rating');
+        events.push('remote-skip', 'remote-duck', 'remote-set-rating', 'remote-play-id', 'remote-play-search',
+            'playback-queue-imported');
     }
 
     for (let i = 0; i < events.length; i++) {
@@ -128,6 +287,11 @@ module.exports.PITCH_ALGORITHM_LINEAR = TrackPlayer.PITCH_ALGORITHM_LINEAR;
 module.exports.PITCH_ALGORITHM_MUSIC = TrackPlayer.PITCH_ALGORITHM_MUSIC;
 module.exports.PITCH_ALGORITHM_VOICE = TrackPlayer.PITCH_ALGORITHM_VOICE;
 
+// Repeat Modes
+module.exports.REPEAT_OFF = TrackPlayer.REPEAT_OFF;
+module.exports.REPEAT_TRACK = TrackPlayer.REPEAT_TRACK;
+module.exports.REPEAT_QUEUE = TrackPlayer.REPEAT_QUEUE;
+
 // Rating Types
 module.exports.RATING_HEART = TrackPlayer.RATING_HEART;
 module.exports.RATING_THUMBS_UP_DOWN = TrackPlayer.RATING_THUMBS_UP_DOWN;
@@ -141,6 +305,8 @@ module.exports.setupPlayer = setupPlayer;
 module.exports.destroy = TrackPlayer.destroy;
 module.exports.updateOptions = updateOptions;
 module.exports.registerEventHandler = registerEventHandler;
+module.exports.registerBrowseProvider = registerBrowseProvider;
+module.exports.invalidateBrowseChildren = invalidateBrowseChildren;
 
 // Player Queue Commands
 module.exports.add = add;
@@ -150,6 +316,21 @@ module.exports.getQueue = TrackPlayer.getQueue;
 module.exports.skipToNext = TrackPlayer.skipToNext;
 module.exports.skipToPrevious = TrackPlayer.skipToPrevious;
 module.exports.removeUpcomingTracks = TrackPlayer.removeUpcomingTracks;
+module.exports.updateMetadataForTrack = updateMetadataForTrack;
+module.exports.addFromPlaylist = addFromPlaylist;
+module.exports.addFromMediaStore = addFromMediaStore;
+module.exports.setStandbyHint = setStandbyHint;
+module.exports.switchQueue = switchQueue;
+module.exports.removeQueue = removeQueue;
+module.exports.getQueues = getQueues;
+module.exports.getActiveQueue = getActiveQueue;
+module.exports.searchQueue = searchQueue;
+
+// Sound Effects
+module.exports.loadSound = loadSound;
+module.exports.playSound = playSound;
+module.exports.stopSound = stopSound;
+module.exports.unloadSound = unloadSound;
 
 // Player Playback Commands
 module.exports.reset = TrackPlayer.reset;
@@ -159,6 +340,9 @@ module.exports.stop = TrackPlayer.stop;
 module.exports.seekTo = TrackPlayer.seekTo;
 module.exports.setVolume = TrackPlayer.setVolume;
 module.exports.setRate = TrackPlayer.setRate;
+module.exports.setCrossfade = setCrossfade;
+module.exports.setRepeatMode = setRepeatMode;
+module.exports.setShuffleMode = setShuffleMode;
 
 // Player Getters
 module.exports.getTrack = TrackPlayer.getTrack;
@@ -169,6 +353,8 @@ module.exports.getPosition = TrackPlayer.getPosition;
 module.exports.getBufferedPosition = TrackPlayer.getBufferedPosition;
 module.exports.getState = TrackPlayer.getState;
 module.exports.getRate = TrackPlayer.getRate;
+module.exports.getRepeatMode = getRepeatMode;
+module.exports.getShuffleMode = getShuffleMode;
 
 // Components
 module.exports.ProgressComponent = require('./ProgressComponent');